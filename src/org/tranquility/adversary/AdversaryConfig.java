@@ -0,0 +1,80 @@
+package org.tranquility.adversary;
+
+import com.fs.starfarer.api.Global;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.tranquility.adversary.lunalib.AdversaryLunaUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.tranquility.adversary.AdversaryStrings.*;
+import static org.tranquility.adversary.AdversaryUtil.LUNALIB_ENABLED;
+
+/**
+ * Immutable snapshot of the mod's settings: settings.json values, overridden by LunaLib's where it has them.
+ * Built at application load and rebuilt whenever LunaLib settings change; the current snapshot is swapped as a whole,
+ * so readers see either the old or the new settings and never a mix. Hot paths read its fields directly.
+ */
+public final class AdversaryConfig {
+    private static volatile AdversaryConfig current;
+
+    public final boolean enableDynamicDoctrine, enableBlueprintStealing, enableSillyBounties, enablePersonalFleet;
+    public final int dynamicDoctrineDelay, blueprintStealingDelay; // In months; at least 1
+    public final List<String> stealsFromFactions;
+    public final int stolenBlueprintCap;
+    public final int maxFleets; // Of the Adversary crisis, per system
+    public final int officerPoolSize; // Per faction; 0 disables the persona pool
+
+    private AdversaryConfig() throws JSONException {
+        enableDynamicDoctrine = getBoolean(SETTINGS_ENABLE_ADVERSARY_DYNAMIC_DOCTRINE);
+        enableBlueprintStealing = getBoolean(SETTINGS_ENABLE_ADVERSARY_BLUEPRINT_STEALING);
+        enableSillyBounties = getBoolean(SETTINGS_ENABLE_ADVERSARY_SILLY_BOUNTIES);
+        enablePersonalFleet = getBoolean(SETTINGS_ENABLE_ADVERSARY_PERSONAL_FLEET);
+        dynamicDoctrineDelay = Math.max(getInt(SETTINGS_ADVERSARY_DYNAMIC_DOCTRINE_DELAY), 1);
+        blueprintStealingDelay = Math.max(getInt(SETTINGS_ADVERSARY_BLUEPRINT_STEALING_DELAY), 1);
+
+        JSONArray factions = Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_STEALS_FROM_FACTIONS);
+        ArrayList<String> factionIds = new ArrayList<>(factions.length());
+        for (int i = 0; i < factions.length(); i++) factionIds.add(factions.getString(i));
+        stealsFromFactions = Collections.unmodifiableList(factionIds);
+
+        stolenBlueprintCap = Global.getSettings().getInt(SETTINGS_ADVERSARY_STOLEN_BLUEPRINT_CAP);
+        maxFleets = Global.getSettings().getInt(SETTINGS_ADVERSARY_MAX_FLEETS);
+        officerPoolSize = Math.max(Global.getSettings().getInt(SETTINGS_ADVERSARY_OFFICER_POOL_SIZE), 0);
+    }
+
+    public static AdversaryConfig get() {
+        AdversaryConfig config = current;
+        return config != null ? config : reload();
+    }
+
+    // Rebuilds the snapshot from the current settings and makes it the current one
+    public static AdversaryConfig reload() {
+        AdversaryConfig config;
+        try {
+            config = new AdversaryConfig();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        current = config;
+        return config;
+    }
+
+    private static boolean getBoolean(String key) {
+        if (LUNALIB_ENABLED) {
+            Boolean value = AdversaryLunaUtil.getBoolean(MOD_ID_ADVERSARY, key);
+            if (value != null) return value;
+        }
+        return Global.getSettings().getBoolean(key);
+    }
+
+    private static int getInt(String key) {
+        if (LUNALIB_ENABLED) {
+            Integer value = AdversaryLunaUtil.getInt(MOD_ID_ADVERSARY, key);
+            if (value != null) return value;
+        }
+        return Global.getSettings().getInt(key);
+    }
+}
@@ -0,0 +1,70 @@
+package org.tranquility.adversary;
+
+import java.util.Random;
+
+/**
+ * Produces exactly the same numbers as a java.util.Random with the same seed, but its state can be copied and compared.
+ * Work can then be done ahead of time on a copy, and only used if the original was not drawn from in the meantime.
+ */
+public class AdversaryCopyableRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+
+    private long seed;
+    // Random keeps these in private fields, so nextGaussian() is reimplemented to carry them over in copies
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    public AdversaryCopyableRandom(long seed) {
+        super(seed);
+    }
+
+    public AdversaryCopyableRandom copy() {
+        AdversaryCopyableRandom copy = new AdversaryCopyableRandom(0L);
+        copy.setState(this);
+        return copy;
+    }
+
+    // Continues from where the other one is
+    public void setState(AdversaryCopyableRandom other) {
+        seed = other.seed;
+        nextNextGaussian = other.nextNextGaussian;
+        haveNextNextGaussian = other.haveNextNextGaussian;
+    }
+
+    // True if both would produce the same numbers from now on
+    public boolean hasSameState(AdversaryCopyableRandom other) {
+        return seed == other.seed && haveNextNextGaussian == other.haveNextNextGaussian && (!haveNextNextGaussian || nextNextGaussian == other.nextNextGaussian);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        this.seed = (seed ^ MULTIPLIER) & MASK; // Also called by Random's constructor, before the fields above are assigned
+        haveNextNextGaussian = false;
+    }
+
+    @Override
+    protected int next(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    // Same polar method as Random's
+    @Override
+    public synchronized double nextGaussian() {
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+}
@@ -0,0 +1,159 @@
+package org.tranquility.adversary;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CargoAPI;
+import com.fs.starfarer.api.campaign.InteractionDialogAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.econ.Industry;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.listeners.ColonyDecivListener;
+import com.fs.starfarer.api.campaign.listeners.ColonyPlayerHostileActListener;
+import com.fs.starfarer.api.campaign.listeners.EconomyTickListener;
+import com.fs.starfarer.api.impl.campaign.ids.Commodities;
+import com.fs.starfarer.api.impl.campaign.ids.Industries;
+import com.fs.starfarer.api.impl.campaign.rulecmd.salvage.MarketCMD.TempData;
+
+import java.util.*;
+
+import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
+
+/**
+ * Keeps every Adversary market sorted by military score, so callers never have to scan the whole economy.
+ * The registry is transient: it is rebuilt lazily for each loaded sector and marked stale by economy ticks
+ * (ownership changes and finished industries), decivilization, and player raids/bombardments (disruptions).
+ */
+public final class AdversaryMarketRegistry implements EconomyTickListener, ColonyDecivListener, ColonyPlayerHostileActListener {
+    private static AdversaryMarketRegistry instance;
+
+    private final SectorAPI sector;
+    private final ArrayList<MarketAPI> markets = new ArrayList<>(); // Sorted by military score in ascending order
+    private final List<MarketAPI> marketsView = Collections.unmodifiableList(markets);
+    private int[] scores = new int[0];
+    private boolean stale = true;
+    private int version;
+
+    private AdversaryMarketRegistry(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    public static AdversaryMarketRegistry get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) {
+            instance = new AdversaryMarketRegistry(sector);
+            sector.getListenerManager().addListener(instance, true);
+        }
+        return instance;
+    }
+
+    /**
+     * @return All Adversary markets as of the last rebuild, sorted by military score in ascending order
+     */
+    public List<MarketAPI> getMarkets() {
+        if (stale) rebuild();
+        return marketsView;
+    }
+
+    /**
+     * @return The Adversary market with the best High Command/Military Base, or null if none exist
+     */
+    public MarketAPI getBestMarket() {
+        if (stale) rebuild();
+        return markets.isEmpty() ? null : markets.get(markets.size() - 1);
+    }
+
+    // Precomputed score of the market at the given index of getMarkets()
+    public int getScore(int index) {
+        if (stale) rebuild();
+        return scores[index];
+    }
+
+    // Incremented whenever the registry's contents change or an Adversary market is raided/bombarded/decivilized
+    public int getVersion() {
+        if (stale) rebuild();
+        return version;
+    }
+
+    // Forces a rebuild and a version change, even if the markets and their scores look the same
+    public void invalidate() {
+        stale = true;
+        version++;
+    }
+
+    private void rebuild() {
+        stale = false;
+        ArrayList<MarketAPI> oldMarkets = new ArrayList<>(markets);
+        int[] oldScores = scores;
+
+        final HashMap<MarketAPI, Integer> scoreMap = new HashMap<>();
+        for (MarketAPI market : sector.getEconomy().getMarketsCopy())
+            if (market.getFactionId().equals(FACTION_ADVERSARY)) scoreMap.put(market, computeScore(market));
+
+        markets.clear();
+        markets.addAll(scoreMap.keySet());
+        Collections.sort(markets, new Comparator<MarketAPI>() {
+            @Override
+            public int compare(MarketAPI m1, MarketAPI m2) {
+                int comp = Integer.compare(scoreMap.get(m1), scoreMap.get(m2));
+                if (comp != 0) return comp;
+                comp = Integer.compare(m1.getSize(), m2.getSize());
+                if (comp != 0) return comp;
+                return m1.getId().compareTo(m2.getId());
+            }
+        });
+
+        scores = new int[markets.size()];
+        for (int i = 0; i < scores.length; i++) scores[i] = scoreMap.get(markets.get(i));
+
+        if (!markets.equals(oldMarkets) || !Arrays.equals(scores, oldScores)) version++;
+    }
+
+    private static int computeScore(MarketAPI market) {
+        int score = 0;
+        Industry highCommand = market.getIndustry(Industries.HIGHCOMMAND);
+        if (highCommand != null) {
+            score += 2;
+            if (highCommand.isImproved()) score++;
+            if (Commodities.ALPHA_CORE.equals(highCommand.getAICoreId())) score++;
+            if (highCommand.getSpecialItem() != null) score++;
+        } else if (market.hasIndustry(Industries.MILITARYBASE)) score++;
+        return score;
+    }
+
+    // Ownership changes and newly-built industries are only visible once the economy advances
+    @Override
+    public void reportEconomyTick(int iterIndex) {
+        stale = true;
+    }
+
+    @Override
+    public void reportEconomyMonthEnd() {
+    }
+
+    @Override
+    public void reportColonyAboutToBeDecivilized(MarketAPI market, boolean fullyDestroyed) {
+    }
+
+    @Override
+    public void reportColonyDecivilized(MarketAPI market, boolean fullyDestroyed) {
+        invalidate();
+    }
+
+    @Override
+    public void reportRaidForValuablesFinishedBeforeCargoShown(InteractionDialogAPI dialog, MarketAPI market, TempData actionData, CargoAPI cargo) {
+    }
+
+    @Override
+    public void reportRaidToDisruptFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData, Industry industry) {
+        if (market.getFactionId().equals(FACTION_ADVERSARY)) invalidate();
+    }
+
+    @Override
+    public void reportTacticalBombardmentFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData) {
+        if (market.getFactionId().equals(FACTION_ADVERSARY)) invalidate();
+    }
+
+    @Override
+    public void reportSaturationBombardmentFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData) {
+        invalidate();
+    }
+}
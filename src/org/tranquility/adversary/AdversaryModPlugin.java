@@ -4,16 +4,17 @@ import com.fs.starfarer.api.BaseModPlugin;
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.FactionAPI;
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
-import com.fs.starfarer.api.campaign.listeners.ListenerManagerAPI;
 import com.fs.starfarer.api.impl.campaign.ids.Factions;
 import org.json.JSONException;
 import org.tranquility.adversary.lunalib.AdversaryLunaUtil;
-import org.tranquility.adversary.scripts.AdversaryBlueprintStealer;
-import org.tranquility.adversary.scripts.AdversaryDynamicDoctrine;
+import org.tranquility.adversary.rulecmd.AdversaryBountyLoadouts;
+import org.tranquility.adversary.rulecmd.AdversaryBountyProcessor;
+import org.tranquility.adversary.scripts.AdversaryDoctrineCatalog;
+import org.tranquility.adversary.scripts.AdversaryFactionEngine;
+import org.tranquility.adversary.scripts.AdversaryKnowledgeIndex;
 import org.tranquility.adversary.scripts.AdversaryPersonalFleet;
 
-import java.util.List;
-import java.util.TreeSet;
+import java.io.IOException;
 
 import static org.tranquility.adversary.AdversaryStrings.*;
 import static org.tranquility.adversary.AdversaryUtil.LUNALIB_ENABLED;
@@ -22,22 +23,42 @@ import static org.tranquility.adversary.AdversaryUtil.addAdversaryColonyCrisis;
 @SuppressWarnings("unused")
 public class AdversaryModPlugin extends BaseModPlugin {
     @Override
-    public void onApplicationLoad() {
+    public void onApplicationLoad() throws JSONException, IOException {
+        // Parsed once here so new games, settings changes, and save loads all share the same doctrines
+        AdversaryKnowledgeIndex.build();
+        AdversaryDoctrineCatalog.load(FACTION_ADVERSARY, Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_POSSIBLE_DOCTRINES));
+        AdversaryFactionEngine.loadSchedules(Global.getSettings().getJSONObject(SETTINGS_ADVERSARY_FACTION_SCHEDULES));
+        AdversaryBountyLoadouts.load(Global.getSettings().getMergedJSON(PATH_ADVERSARY_BOUNTY_OFFICERS));
+
+        AdversaryConfig.reload();
         if (LUNALIB_ENABLED) AdversaryLunaUtil.addSettingsListener();
     }
 
+    @Override
+    public void onNewGame() {
+        AdversaryConfig.reload(); // LunaLib may not have loaded its settings yet at application load
+    }
+
     @Override
     public void onGameLoad(boolean newGame) {
+        if (!newGame) AdversaryConfig.reload(); // New games already reloaded in onNewGame()
+
         toggleSillyBounties();
 
         // Does not immediately apply if Colony Crisis intel gets (re)added mid-game; it only gets added in after a save & load
         // If the CC intel is removed mid-game (e.g. by losing all colonies), the Adversary crisis gets removed too, leading to the above problem
-        // (HACK: also added this on AdversaryDynamicDoctrine's reportEconomyTick() so crisis can get applied mid-game)
+        // (HACK: also added this on AdversaryFactionEngine's reportEconomyTick() so crisis can get applied mid-game)
         addAdversaryColonyCrisis();
 
         if (!newGame) addAdversaryListeners(false);
     }
 
+    @Override
+    public void beforeGameSave() {
+        AdversaryBountyProcessor.flush(); // Its queue is transient
+        AdversaryPersonaPool.logStats();
+    }
+
     @Override
     public void onNewGameAfterEconomyLoad() {
         setAdversaryRelationship();
@@ -46,21 +67,11 @@ public class AdversaryModPlugin extends BaseModPlugin {
 
     @Override
     public void onNewGameAfterTimePass() {
-        boolean doPersonalFleet;
-        if (LUNALIB_ENABLED)
-            doPersonalFleet = Boolean.TRUE.equals(AdversaryLunaUtil.getBoolean(MOD_ID_ADVERSARY, SETTINGS_ENABLE_ADVERSARY_PERSONAL_FLEET));
-        else doPersonalFleet = Global.getSettings().getBoolean(SETTINGS_ENABLE_ADVERSARY_PERSONAL_FLEET);
-
-        if (doPersonalFleet) addAdversaryPersonalFleet();
+        if (AdversaryConfig.get().enablePersonalFleet) addAdversaryPersonalFleet();
     }
 
     private void toggleSillyBounties() {
-        boolean enableSilliness;
-        if (LUNALIB_ENABLED)
-            enableSilliness = Boolean.TRUE.equals(AdversaryLunaUtil.getBoolean(MOD_ID_ADVERSARY, SETTINGS_ENABLE_ADVERSARY_SILLY_BOUNTIES));
-        else enableSilliness = Global.getSettings().getBoolean(SETTINGS_ENABLE_ADVERSARY_SILLY_BOUNTIES);
-
-        if (enableSilliness) Global.getSector().getMemoryWithoutUpdate().set("$adversary_sillyBountiesEnabled", true);
+        if (AdversaryConfig.get().enableSillyBounties) Global.getSector().getMemoryWithoutUpdate().set("$adversary_sillyBountiesEnabled", true);
         else Global.getSector().getMemoryWithoutUpdate().unset("$adversary_sillyBountiesEnabled");
     }
 
@@ -73,66 +84,23 @@ public class AdversaryModPlugin extends BaseModPlugin {
         adversary.setRelationship(Factions.NEUTRAL, 0f);
     }
 
-    // Remove or add listeners to a game depending on currently-set settings
+    // Enable or disable the faction engine's features depending on currently-set settings
     private void addAdversaryListeners(boolean newGame) {
-        boolean dynaDoctrine, stealBlueprints;
-        if (LUNALIB_ENABLED) {
-            dynaDoctrine = Boolean.TRUE.equals(AdversaryLunaUtil.getBoolean(MOD_ID_ADVERSARY, SETTINGS_ENABLE_ADVERSARY_DYNAMIC_DOCTRINE));
-            stealBlueprints = Boolean.TRUE.equals(AdversaryLunaUtil.getBoolean(MOD_ID_ADVERSARY, SETTINGS_ENABLE_ADVERSARY_BLUEPRINT_STEALING));
-        } else { // Load from settings.json
-            dynaDoctrine = Global.getSettings().getBoolean(SETTINGS_ENABLE_ADVERSARY_DYNAMIC_DOCTRINE);
-            stealBlueprints = Global.getSettings().getBoolean(SETTINGS_ENABLE_ADVERSARY_BLUEPRINT_STEALING);
-        }
-
-        if (newGame) { // Called presumably after onNewGameAfterEconomyLoad()
-            if (dynaDoctrine) addAdversaryDynamicDoctrine(true);
-            if (stealBlueprints) addAdversaryBlueprintStealer(true);
-        } else {
-            ListenerManagerAPI listMan = Global.getSector().getListenerManager();
-            if (dynaDoctrine) {
-                List<AdversaryDynamicDoctrine> doctrineListeners = listMan.getListeners(AdversaryDynamicDoctrine.class);
-                if (doctrineListeners.isEmpty()) addAdversaryDynamicDoctrine(false);
-                else // Refresh needed since restarting Starsector also resets faction doctrines
-                    doctrineListeners.get(0).refresh();
-            } else listMan.removeListenerOfClass(AdversaryDynamicDoctrine.class); // Disable dynamic doctrine
-
-            if (stealBlueprints && listMan.getListeners(AdversaryBlueprintStealer.class).isEmpty())
-                addAdversaryBlueprintStealer(false);
-            else listMan.removeListenerOfClass(AdversaryBlueprintStealer.class); // Disable blueprint stealer
-        }
-    }
+        AdversaryConfig config = AdversaryConfig.get();
+        AdversaryFactionEngine engine = AdversaryFactionEngine.getOrCreate();
+        if (!newGame) engine.migrateLegacyListeners();
 
-    private void addAdversaryDynamicDoctrine(boolean newGame) {
-        Integer doctrineDelay = null;
-        if (LUNALIB_ENABLED)
-            doctrineDelay = AdversaryLunaUtil.getInt(MOD_ID_ADVERSARY, SETTINGS_ADVERSARY_DYNAMIC_DOCTRINE_DELAY);
-        if (doctrineDelay == null)
-            doctrineDelay = Global.getSettings().getInt(SETTINGS_ADVERSARY_DYNAMIC_DOCTRINE_DELAY);
-
-        // Starting the time pass immediately calls reportEconomyMonthEnd(), hence the -1 to account for that
-        try {
-            Global.getSector().getListenerManager().addListener(new AdversaryDynamicDoctrine(FACTION_ADVERSARY, (byte) (newGame ? -1 : 0), doctrineDelay.byteValue(), Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_POSSIBLE_DOCTRINES)));
-        } catch (JSONException e) {
-            throw new RuntimeException(e);
-        }
-    }
+        // Called presumably after onNewGameAfterEconomyLoad() for new games, which then account for the time pass
+        engine.setDynamicDoctrine(FACTION_ADVERSARY, config.enableDynamicDoctrine ? config.dynamicDoctrineDelay : 0, newGame);
+        engine.setBlueprintStealing(FACTION_ADVERSARY, config.enableBlueprintStealing ? config.blueprintStealingDelay : 0, config.stealsFromFactions.toArray(new String[0]), newGame);
+        engine.setStolenBlueprintCap(FACTION_ADVERSARY, config.stolenBlueprintCap);
+        engine.applySchedules(newGame);
 
-    private void addAdversaryBlueprintStealer(boolean newGame) {
-        Integer stealDelay = null;
-        if (LUNALIB_ENABLED)
-            stealDelay = AdversaryLunaUtil.getInt(MOD_ID_ADVERSARY, SETTINGS_ADVERSARY_BLUEPRINT_STEALING_DELAY);
-        if (stealDelay == null) stealDelay = Global.getSettings().getInt(SETTINGS_ADVERSARY_BLUEPRINT_STEALING_DELAY);
-
-        // Starting the time pass immediately calls reportEconomyMonthEnd(), hence the -1 to account for that
-        try {
-            Global.getSector().getListenerManager().addListener(new AdversaryBlueprintStealer(FACTION_ADVERSARY, (byte) (newGame ? -1 : 0), stealDelay.byteValue(), Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_STEALS_FROM_FACTIONS)));
-        } catch (JSONException e) {
-            throw new RuntimeException(e);
-        }
+        if (!newGame) engine.refresh(); // Refresh needed since restarting Starsector also resets faction doctrines
     }
 
     private void addAdversaryPersonalFleet() {
-        TreeSet<MarketAPI> adversaryMarkets = AdversaryUtil.getAdversaryMarkets();
-        if (!adversaryMarkets.isEmpty()) new AdversaryPersonalFleet(adversaryMarkets.last().getId());
+        MarketAPI bestMarket = AdversaryMarketRegistry.get().getBestMarket();
+        if (bestMarket != null) new AdversaryPersonalFleet(bestMarket.getId());
     }
 }
\ No newline at end of file
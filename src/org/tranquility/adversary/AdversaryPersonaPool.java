@@ -0,0 +1,114 @@
+package org.tranquility.adversary;
+
+import com.fs.starfarer.api.EveryFrameScript;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.characters.PersonAPI;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-faction pools of pre-rolled persons (name, portrait, gender), so officer creation only has to stamp a level,
+ * personality, and skills onto one instead of going through the faction's pickers while a fleet is being set up.
+ * Pools are refilled a person at a time on unpaused campaign frames, and only for factions that took from them.
+ * A take from an empty pool falls back to rolling a person right away. The pools are transient and per sector.
+ * <p>
+ * Persons are rolled with the faction's own random, so fleets meant to be reproducible from a seed must not take from
+ * here; they roll their officers from their seeded random instead. The pool size comes from AdversaryConfig.
+ */
+public final class AdversaryPersonaPool implements EveryFrameScript {
+    public static int REFILLS_PER_FRAME = 1;
+
+    private static AdversaryPersonaPool instance;
+
+    private final SectorAPI sector;
+    private final LinkedHashMap<String, ArrayDeque<PersonAPI>> pools = new LinkedHashMap<>();
+    private int hits, misses;
+
+    private AdversaryPersonaPool(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    public static AdversaryPersonaPool get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) {
+            instance = new AdversaryPersonaPool(sector);
+            sector.addTransientScript(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * @return A freshly-rolled person of the faction, with no skills; the caller sets everything else
+     */
+    public PersonAPI take(FactionAPI faction) {
+        int poolSize = AdversaryConfig.get().officerPoolSize;
+        ArrayDeque<PersonAPI> pool = pools.get(faction.getId());
+        if (pool == null && poolSize > 0) {
+            pool = new ArrayDeque<>(poolSize);
+            pools.put(faction.getId(), pool);
+        }
+
+        PersonAPI person = pool == null ? null : pool.poll();
+        if (person != null) {
+            hits++;
+            return person;
+        }
+        misses++;
+        return faction.createRandomPerson();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    // Persons currently waiting in the faction's pool
+    public int getPooled(String factionId) {
+        ArrayDeque<PersonAPI> pool = pools.get(factionId);
+        return pool == null ? 0 : pool.size();
+    }
+
+    // Logs the counters of the current sector's pool, if anything took from it
+    public static void logStats() {
+        if (instance == null || instance.sector != Global.getSector()) return;
+        StringBuilder pooled = new StringBuilder();
+        for (String factionId : instance.pools.keySet())
+            pooled.append(factionId).append('=').append(instance.getPooled(factionId)).append(',');
+        if (pooled.length() > 0) pooled.deleteCharAt(pooled.length() - 1);
+        Global.getLogger(AdversaryPersonaPool.class).info("Persona pool: " + instance.hits + " hits, " + instance.misses + " misses, pooled [" + pooled + "]");
+    }
+
+    @Override
+    public boolean isDone() {
+        return false;
+    }
+
+    @Override
+    public boolean runWhilePaused() {
+        return false;
+    }
+
+    @Override
+    public void advance(float amount) {
+        int refills = REFILLS_PER_FRAME, poolSize = AdversaryConfig.get().officerPoolSize;
+        for (Map.Entry<String, ArrayDeque<PersonAPI>> entry : pools.entrySet()) {
+            ArrayDeque<PersonAPI> pool = entry.getValue();
+            if (pool.size() >= poolSize) continue;
+
+            FactionAPI faction = sector.getFaction(entry.getKey());
+            if (faction == null) continue;
+            while (refills > 0 && pool.size() < poolSize) {
+                pool.add(faction.createRandomPerson());
+                refills--;
+            }
+            if (refills == 0) return;
+        }
+    }
+}
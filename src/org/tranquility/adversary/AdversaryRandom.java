@@ -0,0 +1,87 @@
+package org.tranquility.adversary;
+
+import com.fs.starfarer.api.Global;
+
+import java.util.Random;
+
+/**
+ * SplitMix64 generator whose whole state is two longs, getState() and getGamma(), so callers can persist those instead
+ * of a Random. Streams made with the single-argument constructor use the default gamma, so persisting getState() alone
+ * is enough to resume them; split() streams have their own gamma and need both.
+ * Each subsystem gets its own stream derived from the sector seed (see seedFor()), making its decisions reproducible
+ * for the same sector and settings. Any state, including 0, is valid, so callers track "not seeded yet" separately.
+ */
+public class AdversaryRandom extends Random {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private final long gamma;
+
+    public AdversaryRandom(long state) {
+        this(state, GOLDEN_GAMMA);
+    }
+
+    public AdversaryRandom(long state, long gamma) {
+        super(0L);
+        this.state = state;
+        this.gamma = gamma | 1L; // Must be odd to visit every state
+    }
+
+    /**
+     * @param stream Name of the subsystem, e.g. "doctrine"
+     * @param key    Optional key within the subsystem, e.g. a faction ID
+     * @return Initial state for that stream in the current sector
+     */
+    public static long seedFor(String stream, String key) {
+        String sectorSeed = Global.getSector() != null ? Global.getSector().getSeedString() : null;
+        long hash = hash(sectorSeed, 0L);
+        hash = hash(stream, hash);
+        hash = hash(key, hash);
+        return mix64(hash);
+    }
+
+    // Independent generator whose sequence does not overlap with this one in practice
+    public AdversaryRandom split() {
+        return new AdversaryRandom(nextLong(), mix64(nextSeed()));
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    // Pass to the two-argument constructor along with getState() to resume a split() stream
+    public long getGamma() {
+        return gamma;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = seed; // Also called by Random's constructor, before the fields above are assigned
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    private long nextSeed() {
+        return state += gamma;
+    }
+
+    private static long hash(String s, long hash) {
+        if (s == null) return hash * 31;
+        for (int i = 0; i < s.length(); i++) hash = hash * 31 + s.charAt(i);
+        return mix64(hash + GOLDEN_GAMMA);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -26,6 +26,24 @@ public final class AdversaryStrings {
     // Settings for the Adversary Blueprint Stealing
     public static final String SETTINGS_ADVERSARY_BLUEPRINT_STEALING_DELAY = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryBlueprintStealingDelay");
     public static final String SETTINGS_ADVERSARY_STEALS_FROM_FACTIONS = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryStealsFromFactions");
+    public static final String SETTINGS_ADVERSARY_STOLEN_BLUEPRINT_CAP = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryStolenBlueprintCap");
+
+    // Settings for the Adversary Colony Crisis
+    public static final String SETTINGS_ADVERSARY_MAX_FLEETS = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryMaxFleets");
+
+    // Other settings
+    public static final String SETTINGS_ADVERSARY_OFFICER_POOL_SIZE = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryOfficerPoolSize");
+
+    // Settings for other factions driven by the dynamic doctrine and blueprint stealing engine
+    public static final String SETTINGS_ADVERSARY_FACTION_SCHEDULES = Global.getSettings().getString(STRINGS_CATEGORY, "settings_adversaryFactionSchedules");
+    public static final String SETTINGS_DYNAMIC_DOCTRINE_DELAY = Global.getSettings().getString(STRINGS_CATEGORY, "settings_dynamicDoctrineDelay");
+    public static final String SETTINGS_POSSIBLE_DOCTRINES = Global.getSettings().getString(STRINGS_CATEGORY, "settings_possibleDoctrines");
+    public static final String SETTINGS_BLUEPRINT_STEALING_DELAY = Global.getSettings().getString(STRINGS_CATEGORY, "settings_blueprintStealingDelay");
+    public static final String SETTINGS_STEALS_FROM_FACTIONS = Global.getSettings().getString(STRINGS_CATEGORY, "settings_stealsFromFactions");
+    public static final String SETTINGS_STOLEN_BLUEPRINT_CAP = Global.getSettings().getString(STRINGS_CATEGORY, "settings_stolenBlueprintCap");
+
+    // Data files
+    public static final String PATH_ADVERSARY_BOUNTY_OFFICERS = Global.getSettings().getString(STRINGS_CATEGORY, "path_adversaryBountyOfficers");
 
     // Used for Adversary Personal Fleet
     public static final String PERSON_ID_ADVERSARY_PERSONAL_COMMANDER = Global.getSettings().getString(STRINGS_CATEGORY, "person_id_adversary_personal_commander");
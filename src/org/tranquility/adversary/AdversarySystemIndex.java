@@ -0,0 +1,183 @@
+package org.tranquility.adversary;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import org.lwjgl.util.vector.Vector2f;
+
+import java.util.List;
+
+/**
+ * Uniform grid over the hyperspace locations of every star system, for "nearest system matching a filter" queries.
+ * Queries search outwards ring by ring and stop once no unvisited cell can hold a closer system, so they only look at
+ * systems near the query point instead of the whole sector. The index is transient: it is built lazily for each loaded
+ * sector, and rebuilt whenever the sector's systems or their locations differ from the ones it was built from.
+ * That check is a linear pass of reference and float comparisons, about what fetching the sector's system list costs.
+ */
+public final class AdversarySystemIndex {
+    public static float CELL_SIZE = 4000f;
+
+    private static AdversarySystemIndex instance;
+
+    private final SectorAPI sector;
+    private StarSystemAPI[] systems; // Grouped by cell
+    private float[] xs, ys;
+    private StarSystemAPI[] builtSystems; // In the sector's order, with the locations the index was built from
+    private float[] builtXs, builtYs;
+    private int[] cellStarts; // systems of cell i are at [cellStarts[i], cellStarts[i + 1])
+    private float minX, minY;
+    private int cols, rows;
+
+    private AdversarySystemIndex(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    public static AdversarySystemIndex get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) instance = new AdversarySystemIndex(sector);
+        return instance;
+    }
+
+    public interface SystemFilter {
+        boolean accept(StarSystemAPI system);
+    }
+
+    public static final SystemFilter BLACK_HOLE = new SystemFilter() {
+        @Override
+        public boolean accept(StarSystemAPI system) {
+            return system.hasBlackHole();
+        }
+    };
+
+    public static final SystemFilter PULSAR = new SystemFilter() {
+        @Override
+        public boolean accept(StarSystemAPI system) {
+            return system.hasPulsar();
+        }
+    };
+
+    public static final SystemFilter NEBULA = new SystemFilter() {
+        @Override
+        public boolean accept(StarSystemAPI system) {
+            return system.isNebula();
+        }
+    };
+
+    public static SystemFilter withoutTag(final String tag) {
+        return new SystemFilter() {
+            @Override
+            public boolean accept(StarSystemAPI system) {
+                return !system.hasTag(tag);
+            }
+        };
+    }
+
+    public static SystemFilter both(final SystemFilter first, final SystemFilter second) {
+        return new SystemFilter() {
+            @Override
+            public boolean accept(StarSystemAPI system) {
+                return first.accept(system) && second.accept(system);
+            }
+        };
+    }
+
+    /**
+     * @param loc    Location in hyperspace
+     * @param filter Systems to consider, or null for all of them
+     * @return The closest accepted system to loc, or null if no system is accepted
+     */
+    public StarSystemAPI getNearest(Vector2f loc, SystemFilter filter) {
+        List<StarSystemAPI> sectorSystems = sector.getStarSystems();
+        if (!isCurrent(sectorSystems)) build(sectorSystems);
+        if (systems.length == 0) return null;
+
+        int col = clamp((int) Math.floor((loc.x - minX) / CELL_SIZE), cols);
+        int row = clamp((int) Math.floor((loc.y - minY) / CELL_SIZE), rows);
+        int maxRing = Math.max(Math.max(col, cols - 1 - col), Math.max(row, rows - 1 - row));
+
+        StarSystemAPI nearest = null;
+        float nearestDistSq = Float.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = Math.max(row - ring, 0); r <= Math.min(row + ring, rows - 1); r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                // Cells strictly inside the ring were already searched
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += step) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = r * cols + c;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        float dx = xs[i] - loc.x, dy = ys[i] - loc.y;
+                        float distSq = dx * dx + dy * dy;
+                        if (distSq < nearestDistSq && (filter == null || filter.accept(systems[i]))) {
+                            nearest = systems[i];
+                            nearestDistSq = distSq;
+                        }
+                    }
+                }
+            }
+            // Every cell in the next ring is at least this far away
+            float bound = ring * CELL_SIZE;
+            if (nearest != null && nearestDistSq <= bound * bound) break;
+        }
+        return nearest;
+    }
+
+    // Compares against the systems the index was built from, so removing one system and adding another is caught too
+    private boolean isCurrent(List<StarSystemAPI> sectorSystems) {
+        if (builtSystems == null || builtSystems.length != sectorSystems.size()) return false;
+        for (int i = 0; i < builtSystems.length; i++) {
+            StarSystemAPI system = sectorSystems.get(i);
+            if (system != builtSystems[i]) return false;
+            Vector2f loc = system.getLocation();
+            if (loc.x != builtXs[i] || loc.y != builtYs[i]) return false;
+        }
+        return true;
+    }
+
+    private void build(List<StarSystemAPI> sectorSystems) {
+        int size = sectorSystems.size();
+        builtSystems = new StarSystemAPI[size];
+        builtXs = new float[size];
+        builtYs = new float[size];
+        minX = Float.MAX_VALUE;
+        minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            builtSystems[i] = sectorSystems.get(i);
+            Vector2f loc = builtSystems[i].getLocation();
+            builtXs[i] = loc.x;
+            builtYs[i] = loc.y;
+            minX = Math.min(minX, loc.x);
+            minY = Math.min(minY, loc.y);
+            maxX = Math.max(maxX, loc.x);
+            maxY = Math.max(maxY, loc.y);
+        }
+        cols = size == 0 ? 1 : (int) ((maxX - minX) / CELL_SIZE) + 1;
+        rows = size == 0 ? 1 : (int) ((maxY - minY) / CELL_SIZE) + 1;
+
+        // Counting sort of the systems by cell
+        int[] cells = new int[size];
+        cellStarts = new int[cols * rows + 1];
+        for (int i = 0; i < size; i++) {
+            cells[i] = clamp((int) ((builtYs[i] - minY) / CELL_SIZE), rows) * cols + clamp((int) ((builtXs[i] - minX) / CELL_SIZE), cols);
+            cellStarts[cells[i] + 1]++;
+        }
+        for (int cell = 0; cell < cols * rows; cell++) cellStarts[cell + 1] += cellStarts[cell];
+
+        systems = new StarSystemAPI[size];
+        xs = new float[size];
+        ys = new float[size];
+        int[] next = new int[cols * rows];
+        System.arraycopy(cellStarts, 0, next, 0, next.length);
+        for (int i = 0; i < size; i++) {
+            int index = next[cells[i]]++;
+            systems[index] = builtSystems[i];
+            xs[index] = builtXs[i];
+            ys[index] = builtYs[i];
+        }
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(index, count - 1));
+    }
+}
@@ -2,50 +2,24 @@ package org.tranquility.adversary.lunalib;
 
 import com.fs.starfarer.api.GameState;
 import com.fs.starfarer.api.Global;
-import com.fs.starfarer.api.campaign.listeners.ListenerManagerAPI;
-import lunalib.lunaSettings.LunaSettings;
 import lunalib.lunaSettings.LunaSettingsListener;
-import org.json.JSONException;
-import org.tranquility.adversary.scripts.AdversaryBlueprintStealer;
-import org.tranquility.adversary.scripts.AdversaryDynamicDoctrine;
+import org.tranquility.adversary.AdversaryConfig;
+import org.tranquility.adversary.scripts.AdversaryFactionEngine;
 
-import java.util.List;
-
-import static org.tranquility.adversary.AdversaryStrings.*;
+import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
 
 public class AdversaryLunaSettingsListener implements LunaSettingsListener {
     @Override
     public void settingsChanged(String modId) {
+        AdversaryConfig config = AdversaryConfig.reload();
         if (Global.getCurrentState() != GameState.CAMPAIGN) return;
 
-        if (Boolean.TRUE.equals(LunaSettings.getBoolean(modId, SETTINGS_ENABLE_ADVERSARY_SILLY_BOUNTIES))) {
+        if (config.enableSillyBounties) {
             Global.getSector().getMemoryWithoutUpdate().set("$adversary_sillyBountiesEnabled", true);
         } else Global.getSector().getMemoryWithoutUpdate().unset("$adversary_sillyBountiesEnabled");
 
-        ListenerManagerAPI listMan = Global.getSector().getListenerManager();
-
-        Integer doctrineDelay = LunaSettings.getInt(modId, SETTINGS_ADVERSARY_DYNAMIC_DOCTRINE_DELAY);
-        assert doctrineDelay != null;
-        if (Boolean.TRUE.equals(LunaSettings.getBoolean(modId, SETTINGS_ENABLE_ADVERSARY_DYNAMIC_DOCTRINE))) {
-            List<AdversaryDynamicDoctrine> changers = listMan.getListeners(AdversaryDynamicDoctrine.class);
-            if (changers.isEmpty()) try {
-                listMan.addListener(new AdversaryDynamicDoctrine(FACTION_ADVERSARY, (byte) 0, doctrineDelay.byteValue(), Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_POSSIBLE_DOCTRINES)));
-            } catch (JSONException e) {
-                throw new RuntimeException(e);
-            }
-            else changers.get(0).setDelay(doctrineDelay.byteValue());
-        } else listMan.removeListenerOfClass(AdversaryDynamicDoctrine.class); // Disable dynamic doctrine
-
-        Integer stealDelay = LunaSettings.getInt(modId, SETTINGS_ADVERSARY_BLUEPRINT_STEALING_DELAY);
-        assert stealDelay != null;
-        if (Boolean.TRUE.equals(LunaSettings.getBoolean(modId, SETTINGS_ENABLE_ADVERSARY_BLUEPRINT_STEALING))) {
-            List<AdversaryBlueprintStealer> steals = listMan.getListeners(AdversaryBlueprintStealer.class);
-            if (steals.isEmpty()) try {
-                listMan.addListener(new AdversaryBlueprintStealer(FACTION_ADVERSARY, (byte) 0, stealDelay.byteValue(), Global.getSettings().getJSONArray(SETTINGS_ADVERSARY_STEALS_FROM_FACTIONS)));
-            } catch (JSONException e) {
-                throw new RuntimeException(e);
-            }
-            else steals.get(0).setDelay(stealDelay.byteValue());
-        } else listMan.removeListenerOfClass(AdversaryBlueprintStealer.class); // Disable blueprint stealer
+        AdversaryFactionEngine engine = AdversaryFactionEngine.getOrCreate();
+        engine.setDynamicDoctrine(FACTION_ADVERSARY, config.enableDynamicDoctrine ? config.dynamicDoctrineDelay : 0, false);
+        engine.setBlueprintStealing(FACTION_ADVERSARY, config.enableBlueprintStealing ? config.blueprintStealingDelay : 0, config.stealsFromFactions.toArray(new String[0]), false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package org.tranquility.adversary.rulecmd;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.characters.MutableCharacterStatsAPI;
+import com.fs.starfarer.api.characters.PersonAPI;
+import com.fs.starfarer.api.fleet.FleetMemberAPI;
+import com.fs.starfarer.api.impl.campaign.AICoreOfficerPluginImpl;
+import com.fs.starfarer.api.impl.campaign.ids.MemFlags;
+import com.fs.starfarer.api.impl.campaign.ids.Ranks;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tranquility.adversary.AdversaryPersonaPool;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
+
+/**
+ * Officer loadouts of Adversary bounties, compiled once from data/config/adversaryBountyOfficers.json into tables
+ * indexed by bounty ID and then hull ID, so any bounty fleet is processed in a single loop over its ships.
+ */
+public final class AdversaryBountyLoadouts {
+    private static final String ANY_HULL = "*";
+
+    private static HashMap<String, BountyLoadout> loadouts = new HashMap<>();
+
+    private AdversaryBountyLoadouts() {
+    }
+
+    public static void load(JSONObject json) throws JSONException {
+        HashMap<String, BountyLoadout> newLoadouts = new HashMap<>();
+        for (Iterator<?> iter = json.keys(); iter.hasNext(); ) {
+            String bountyId = (String) iter.next();
+            newLoadouts.put(bountyId, new BountyLoadout(json.getJSONObject(bountyId)));
+        }
+        loadouts = newLoadouts;
+    }
+
+    // Null if the bounty has no loadout
+    public static BountyLoadout get(String bountyId) {
+        return loadouts.get(bountyId);
+    }
+
+    public static class BountyLoadout {
+        private final String factionId;
+        private final HashMap<String, OfficerLoadout> officers; // null if captains are left alone
+        private final OfficerLoadout anyHull;
+        private final SkillVector captainSkills;
+        private final HashMap<String, Integer> escorts;
+        private final boolean station, makeHostile;
+
+        private BountyLoadout(JSONObject json) throws JSONException {
+            factionId = json.optString("faction", FACTION_ADVERSARY);
+            station = json.optBoolean("station", false);
+            makeHostile = json.optBoolean("makeHostile", false);
+            captainSkills = json.has("captainSkills") ? new SkillVector(json.getJSONObject("captainSkills")) : null;
+
+            JSONObject escortsJson = json.optJSONObject("escorts");
+            if (escortsJson != null) {
+                escorts = new HashMap<>();
+                for (Iterator<?> iter = escortsJson.keys(); iter.hasNext(); ) {
+                    String variantId = (String) iter.next();
+                    escorts.put(variantId, escortsJson.getInt(variantId));
+                }
+            } else escorts = null;
+
+            JSONObject officersJson = json.optJSONObject("officers");
+            if (officersJson != null) {
+                officers = new HashMap<>();
+                int index = 0;
+                for (Iterator<?> iter = officersJson.keys(); iter.hasNext(); ) {
+                    String hullId = (String) iter.next();
+                    if (!hullId.equals(ANY_HULL))
+                        officers.put(hullId, new OfficerLoadout(officersJson.getJSONObject(hullId), index++));
+                }
+                anyHull = officersJson.has(ANY_HULL) ? new OfficerLoadout(officersJson.getJSONObject(ANY_HULL), index) : null;
+            } else {
+                officers = null;
+                anyHull = null;
+            }
+        }
+
+        public boolean isStation() {
+            return station;
+        }
+
+        public boolean isMakeHostile() {
+            return makeHostile;
+        }
+
+        public HashMap<String, Integer> getEscorts() {
+            return escorts;
+        }
+
+        public FactionAPI getFaction() {
+            return Global.getSector().getFaction(factionId);
+        }
+
+        // Per-hull officer counts, for loadouts with a maximum; one array per fleet
+        public int[] newCounts() {
+            return new int[officers == null ? 0 : officers.size() + 1];
+        }
+
+        // Applies any changes to the bounty target
+        public void applyCaptain(PersonAPI captain) {
+            if (captainSkills != null) captainSkills.apply(captain.getStats());
+        }
+
+        // Replaces the captain of a ship that isn't the bounty target
+        public void applyMember(FleetMemberAPI member, FactionAPI faction, int[] counts) {
+            if (officers == null || member.isFlagship()) return;
+            member.setCaptain(null);
+
+            OfficerLoadout officer = officers.get(member.getHullId());
+            if (officer == null) officer = anyHull;
+            if (officer == null || officer.max > 0 && counts[officer.index] >= officer.max) return;
+            counts[officer.index]++;
+            officer.create(faction, member);
+        }
+    }
+
+    private static class OfficerLoadout {
+        private final int index, level, max;
+        private final String personality, aiCore, shipName;
+        private final boolean sleeper;
+        private final SkillVector skills;
+
+        OfficerLoadout(JSONObject json, int index) throws JSONException {
+            this.index = index;
+            level = json.getInt("level");
+            max = json.optInt("max", 0);
+            personality = json.optString("personality", null);
+            aiCore = json.optString("aiCore", null);
+            shipName = json.optString("shipName", null);
+            sleeper = json.optBoolean("sleeper", false);
+            skills = new SkillVector(json.getJSONObject("skills"));
+        }
+
+        void create(FactionAPI faction, FleetMemberAPI member) {
+            PersonAPI person;
+            if (aiCore != null) person = new AICoreOfficerPluginImpl().createPerson(aiCore, faction.getId(), null);
+            else {
+                person = AdversaryPersonaPool.get().take(faction);
+                person.setRankId(Ranks.SPACE_LIEUTENANT);
+                person.setPostId(Ranks.POST_OFFICER);
+            }
+            if (personality != null) person.setPersonality(personality);
+            member.setCaptain(person);
+
+            person.getStats().setSkipRefresh(true);
+            person.getStats().setLevel(level);
+            skills.apply(person.getStats());
+            if (sleeper) person.getMemoryWithoutUpdate().set(MemFlags.EXCEPTIONAL_SLEEPER_POD_OFFICER, true);
+            person.getStats().setSkipRefresh(false);
+
+            if (shipName != null) member.setShipName(shipName);
+        }
+    }
+
+    private static class SkillVector {
+        private final String[] skillIds;
+        private final float[] levels;
+
+        SkillVector(JSONObject json) throws JSONException {
+            skillIds = new String[json.length()];
+            levels = new float[skillIds.length];
+            int i = 0;
+            for (Iterator<?> iter = json.keys(); iter.hasNext(); i++) {
+                skillIds[i] = (String) iter.next();
+                levels[i] = (float) json.getDouble(skillIds[i]);
+            }
+        }
+
+        // Callers suppress refreshing around this where needed
+        void apply(MutableCharacterStatsAPI stats) {
+            for (int i = 0; i < skillIds.length; i++) stats.setSkillLevel(skillIds[i], levels[i]);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.tranquility.adversary.rulecmd;
+
+import com.fs.starfarer.api.EveryFrameScript;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.characters.PersonAPI;
+import com.fs.starfarer.api.fleet.FleetMemberAPI;
+import com.fs.starfarer.api.util.Misc;
+import org.tranquility.adversary.rulecmd.AdversaryBountyLoadouts.BountyLoadout;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Post-processes accepted bounty fleets (officers, hull mods, escorts, teleports) a few ships per frame instead of all at
+ * once when the player accepts the bounty. A fleet the player is already near, or gets near, is finished immediately, so
+ * it is never engaged half-processed. The queue is transient; beforeGameSave() finishes every job so none get lost.
+ */
+public final class AdversaryBountyProcessor implements EveryFrameScript {
+    public static long FRAME_BUDGET_NANOS = 2000000L;
+    // Jobs for fleets within this range of the player fleet are finished right away
+    public static float SYNC_RANGE = 3000f;
+
+    private static AdversaryBountyProcessor instance;
+
+    private final SectorAPI sector;
+    private final ArrayDeque<BountyJob> jobs = new ArrayDeque<>();
+
+    private AdversaryBountyProcessor(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    private static AdversaryBountyProcessor get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) {
+            instance = new AdversaryBountyProcessor(sector);
+            sector.addTransientScript(instance);
+        }
+        return instance;
+    }
+
+    // Queues the job, or runs it to the end right away if the player is near the bounty fleet
+    public static void submit(BountyJob job) {
+        if (job.isPlayerNear()) job.finish();
+        else get().jobs.add(job);
+    }
+
+    // Finishes every queued job
+    public static void flush() {
+        if (instance == null || instance.sector != Global.getSector()) return;
+        while (!instance.jobs.isEmpty()) instance.jobs.poll().finish();
+    }
+
+    @Override
+    public boolean isDone() {
+        return false;
+    }
+
+    @Override
+    public boolean runWhilePaused() {
+        return true; // Bounties are accepted in a paused dialog, so start right away
+    }
+
+    @Override
+    public void advance(float amount) {
+        if (jobs.isEmpty()) return;
+
+        for (Iterator<BountyJob> iter = jobs.iterator(); iter.hasNext(); ) {
+            BountyJob job = iter.next();
+            if (job.isPlayerNear()) {
+                job.finish();
+                iter.remove();
+            }
+        }
+
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+        while (!jobs.isEmpty() && System.nanoTime() < deadline)
+            if (jobs.peek().step()) jobs.poll();
+    }
+
+    public static class BountyJob {
+        private static final int START = 0, MEMBERS = 1, FINISH = 2, DONE = 3;
+
+        private final String bountyId;
+        private final BountyLoadout loadout;
+        private final CampaignFleetAPI fleet;
+        private final PersonAPI captain;
+        private final SectorEntityToken spawnLocation;
+        private final FactionAPI faction;
+        private final int[] counts;
+        private List<FleetMemberAPI> members;
+        private int phase, next;
+
+        public BountyJob(String bountyId, BountyLoadout loadout, CampaignFleetAPI fleet, PersonAPI captain, SectorEntityToken spawnLocation) {
+            this.bountyId = bountyId;
+            this.loadout = loadout;
+            this.fleet = fleet;
+            this.captain = captain;
+            this.spawnLocation = spawnLocation;
+            faction = loadout.getFaction();
+            counts = loadout.newCounts();
+        }
+
+        boolean isPlayerNear() {
+            CampaignFleetAPI playerFleet = Global.getSector().getPlayerFleet();
+            return playerFleet != null && playerFleet.getContainingLocation() == fleet.getContainingLocation() && Misc.getDistance(playerFleet, fleet) < SYNC_RANGE;
+        }
+
+        void finish() {
+            boolean done = false;
+            while (!done) done = step();
+        }
+
+        // Does one unit of work (one ship, or a fleet-wide step); returns true once the job is done
+        boolean step() {
+            switch (phase) {
+                case START:
+                    if (AdversaryBountyScript.isEventHorizon(bountyId)) AdversaryBountyScript.prepareEventHorizon(fleet);
+                    loadout.applyCaptain(captain);
+                    if (loadout.isStation()) AdversaryBountyScript.prepareStation(fleet);
+                    members = fleet.getFleetData().getMembersListCopy();
+                    phase = MEMBERS;
+                    break;
+                case MEMBERS:
+                    if (next < members.size()) {
+                        FleetMemberAPI member = members.get(next++);
+                        if (AdversaryBountyScript.isEventHorizon(bountyId))
+                            AdversaryBountyScript.prepareEventHorizonMember(member);
+                        loadout.applyMember(member, faction, counts);
+                    } else phase = FINISH;
+                    break;
+                case FINISH:
+                    if (loadout.getEscorts() != null)
+                        AdversaryBountyScript.spawnEscorts(fleet, spawnLocation, loadout.getEscorts());
+                    if (AdversaryBountyScript.isEventHorizon(bountyId))
+                        AdversaryBountyScript.sendToBlackHole(bountyId, fleet);
+                    if (loadout.isMakeHostile()) Misc.makeHostile(fleet);
+                    phase = DONE;
+                    break;
+            }
+            return phase == DONE;
+        }
+    }
+}
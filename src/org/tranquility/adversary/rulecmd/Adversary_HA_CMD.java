@@ -5,8 +5,7 @@ import com.fs.starfarer.api.campaign.rules.MemoryAPI;
 import com.fs.starfarer.api.impl.campaign.rulecmd.BaseCommandPlugin;
 import com.fs.starfarer.api.util.Misc;
 import org.tranquility.adversary.scripts.crisis.AdversaryActivityCause;
-import org.tranquility.adversary.scripts.crisis.AdversaryHostileActivityFactor;
-import org.tranquility.adversary.scripts.crisis.AdversaryPunitiveExpedition;
+import org.tranquility.adversary.scripts.crisis.AdversaryState;
 import org.tranquility.adversary.scripts.crisis.MutualTenacityScript;
 
 import java.util.List;
@@ -32,18 +31,20 @@ public class Adversary_HA_CMD extends BaseCommandPlugin {
     }
 
     private boolean canConfrontCrisis() {
-        return AdversaryPunitiveExpedition.get() == null && !AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer() && AdversaryActivityCause.isThreateningToAdversary();
+        AdversaryState state = AdversaryState.get();
+        return state.punitiveExpedition == null && !state.satBombardedByPlayer && AdversaryActivityCause.isThreateningToAdversary();
     }
 
     private boolean canMakeDeal() {
-        if (AdversaryPunitiveExpedition.get() != null || AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer() || AdversaryActivityCause.isThreateningToAdversary())
+        AdversaryState state = AdversaryState.get();
+        if (state.punitiveExpedition != null || state.satBombardedByPlayer || AdversaryActivityCause.isThreateningToAdversary())
             return false;
 
-        return MutualTenacityScript.isTrustworthyToAdversary() && MutualTenacityScript.get() == null;
+        return MutualTenacityScript.isTrustworthyToAdversary() && state.mutualTenacityScript == null;
     }
 
     private boolean makeDeal() {
-        if (MutualTenacityScript.get() == null) new MutualTenacityScript();
+        if (AdversaryState.get().mutualTenacityScript == null) new MutualTenacityScript();
         return true;
     }
 }
\ No newline at end of file
@@ -3,52 +3,89 @@ package org.tranquility.adversary.scripts;
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.FactionAPI;
 import com.fs.starfarer.api.campaign.listeners.EconomyTickListener;
-import org.json.JSONArray;
-import org.json.JSONException;
 
+import java.util.ArrayList;
+import java.util.Set;
+
+// Steals blueprints for factions; scheduling is done by AdversaryFactionEngine
+// Instances are only left in older saves, where they were registered as listeners, and hand their state to the engine on load
 public class AdversaryBlueprintStealer implements EconomyTickListener {
     protected String factionId; // TODO: change access modifier to private if doing save-breaking update
     protected String[] targetIds;
     protected byte elapsedMonths, delayInMonths;
 
-    public AdversaryBlueprintStealer(String faction, byte elapsed, byte delay, JSONArray targetFactions) throws JSONException {
-        factionId = faction;
-        elapsedMonths = elapsed;
-        delayInMonths = delay > 0 ? delay : (byte) 1;
-        targetIds = new String[targetFactions.length()];
-        for (int i = 0; i < targetFactions.length(); i++) targetIds[i] = targetFactions.getString(i);
-        Global.getLogger(AdversaryBlueprintStealer.class).info("Faction blueprint stealer active for: " + factionId);
-    }
-
-    public void setDelay(byte newDelay) {
-        delayInMonths = newDelay;
-        Global.getLogger(AdversaryBlueprintStealer.class).info("Set " + factionId + " blueprint stealer delay to " + delayInMonths);
-    }
-
-    // Unused
+    // Unused; the listener is removed as soon as its state is handed to the engine
     @Override
     public void reportEconomyTick(int iterIndex) {
     }
 
     @Override
     public void reportEconomyMonthEnd() {
-        elapsedMonths++;
-        if (elapsedMonths >= delayInMonths) {
-            elapsedMonths = 0;
-            FactionAPI stealerFaction = Global.getSector().getFaction(factionId);
-            for (String id : targetIds) stealBlueprints(stealerFaction, Global.getSector().getFaction(id));
+    }
+
+    // Hands this legacy listener's schedule over to the engine
+    void migrateTo(AdversaryFactionEngine engine) {
+        engine.importStealer(factionId, delayInMonths, elapsedMonths, targetIds);
+    }
+
+    // ORs the blueprints a target learned since the snapshot was last updated into the batch, then updates the snapshot
+    // Factions practically never forget blueprints, so a category whose known count is unchanged is skipped unread
+    protected static void collectNewBlueprints(FactionAPI target, AbsorbedBlueprints absorbed, long[][] batch) {
+        for (int category = 0; category < absorbed.bits.length; category++) {
+            int numKnown = AdversaryKnowledgeIndex.getKnown(target, category).size();
+            if (absorbed.bits[category] != null && absorbed.numKnown[category] == numKnown) continue;
+            absorbed.numKnown[category] = numKnown;
+
+            long[] known = AdversaryKnowledgeIndex.getKnownBits(target, category);
+            if (absorbed.bits[category] == null) absorbed.bits[category] = AdversaryKnowledgeIndex.newBits(category);
+            AdversaryKnowledgeIndex.andNot(known, absorbed.bits[category]); // Only what is new since the last run
+            AdversaryKnowledgeIndex.or(absorbed.bits[category], known);
+            AdversaryKnowledgeIndex.or(batch[category], known);
         }
     }
 
     // See com.fs.starfarer.api.impl.campaign.DelayedBlueprintLearnScript's doAction() for vanilla implementation
-    protected void stealBlueprints(FactionAPI stealer, FactionAPI target) {
-        for (String id : target.getKnownShips())
-            if (!stealer.knowsShip(id)) {
-                stealer.addKnownShip(id, true);
-                stealer.addUseWhenImportingShip(id);
+    // Returns how many blueprints the stealer did not know yet; the caller is responsible for clearing derived caches once
+    protected static int stealBlueprints(FactionAPI stealer, long[][] batch) {
+        ArrayList<String> ships = new ArrayList<>(), weapons = new ArrayList<>(), fighters = new ArrayList<>();
+        decodeUnknown(stealer, batch, AdversaryKnowledgeIndex.SHIPS, ships);
+        decodeUnknown(stealer, batch, AdversaryKnowledgeIndex.WEAPONS, weapons);
+        decodeUnknown(stealer, batch, AdversaryKnowledgeIndex.FIGHTERS, fighters);
+
+        for (String id : ships) {
+            stealer.addKnownShip(id, true);
+            stealer.addUseWhenImportingShip(id);
+        }
+        for (String id : weapons) stealer.addKnownWeapon(id, true);
+        for (String id : fighters) stealer.addKnownFighter(id, true);
+        return ships.size() + weapons.size() + fighters.size();
+    }
+
+    // Looks up only the batch's IDs in the stealer's known set, and clears the ones it already knows from the batch
+    private static void decodeUnknown(FactionAPI stealer, long[][] batch, int category, ArrayList<String> out) {
+        long[] bits = batch[category];
+        if (AdversaryKnowledgeIndex.isEmpty(bits)) return;
+        Set<String> known = AdversaryKnowledgeIndex.getKnown(stealer, category);
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                String id = AdversaryKnowledgeIndex.getId(category, index);
+                if (known.contains(id)) bits[word] &= ~(1L << index);
+                else out.add(id);
+                remaining &= remaining - 1;
             }
-        for (String id : target.getKnownWeapons()) if (!stealer.knowsWeapon(id)) stealer.addKnownWeapon(id, true);
-        for (String id : target.getKnownFighters()) if (!stealer.knowsFighter(id)) stealer.addKnownFighter(id, true);
-        Global.getLogger(AdversaryBlueprintStealer.class).info(factionId + " has stolen blueprints from " + target.getId() + "!");
+        }
+    }
+
+    public static long[][] newBatch() {
+        return new long[][]{AdversaryKnowledgeIndex.newBits(AdversaryKnowledgeIndex.SHIPS), AdversaryKnowledgeIndex.newBits(AdversaryKnowledgeIndex.WEAPONS), AdversaryKnowledgeIndex.newBits(AdversaryKnowledgeIndex.FIGHTERS)};
+    }
+
+    // Bitsets (per AdversaryKnowledgeIndex category) of one target's blueprints that a stealer has already gone through
+    // Transient, so the first run after a load is a full one
+    protected static class AbsorbedBlueprints {
+        final long[][] bits = new long[3][];
+        final int[] numKnown = new int[3]; // Size of the target's known set when its bits were last updated
     }
 }
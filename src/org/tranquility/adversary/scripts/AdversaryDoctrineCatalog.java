@@ -0,0 +1,95 @@
+package org.tranquility.adversary.scripts;
+
+import com.fs.starfarer.api.Global;
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tranquility.adversary.scripts.AdversaryDynamicDoctrine.PriorityDoctrine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.tranquility.adversary.AdversaryStrings.SETTINGS_WEIGHT;
+
+/**
+ * Immutable set of priority doctrines a faction's dynamic doctrine can switch between.
+ * Catalogs are parsed once on application load and shared by every game; saves only store an index into them.
+ * Priority IDs are resolved through AdversaryKnowledgeIndex against the loaded hull, weapon, and wing specs (unknown
+ * IDs are dropped) and share the specs' own ID strings.
+ */
+public final class AdversaryDoctrineCatalog {
+    private static final HashMap<String, AdversaryDoctrineCatalog> catalogs = new HashMap<>();
+
+    private final PriorityDoctrine[] doctrines;
+
+    private AdversaryDoctrineCatalog(PriorityDoctrine[] doctrines) {
+        this.doctrines = doctrines;
+    }
+
+    // Parses and stores a faction's catalog; doctrines with a weight of 0 or less are skipped
+    public static void load(String factionId, JSONArray possibleDoctrines) throws JSONException {
+        Logger logger = Global.getLogger(AdversaryDoctrineCatalog.class);
+        ArrayList<PriorityDoctrine> doctrines = new ArrayList<>();
+        for (int i = 0; i < possibleDoctrines.length(); i++) {
+            JSONObject doctrineObject = possibleDoctrines.getJSONObject(i);
+            int weight = doctrineObject.optInt(SETTINGS_WEIGHT, 1);
+            if (weight <= 0) continue;
+
+            PriorityDoctrine doctrine = new PriorityDoctrine(doctrineObject, weight);
+            doctrine.priorityShips = resolve(doctrine.priorityShips, AdversaryKnowledgeIndex.SHIPS, logger, factionId, "ship");
+            doctrine.priorityWeapons = resolve(doctrine.priorityWeapons, AdversaryKnowledgeIndex.WEAPONS, logger, factionId, "weapon");
+            doctrine.priorityFighters = resolve(doctrine.priorityFighters, AdversaryKnowledgeIndex.FIGHTERS, logger, factionId, "fighter");
+            doctrines.add(doctrine);
+        }
+
+        if (doctrines.isEmpty()) catalogs.remove(factionId); // Falls back to the faction's own doctrine in get()
+        else catalogs.put(factionId, new AdversaryDoctrineCatalog(doctrines.toArray(new PriorityDoctrine[0])));
+        logger.info("Loaded " + doctrines.size() + " dynamic doctrines for: " + factionId);
+    }
+
+    /**
+     * @return The faction's catalog, or a single-doctrine catalog with the faction's default doctrine if none was loaded
+     */
+    public static AdversaryDoctrineCatalog get(String factionId) {
+        AdversaryDoctrineCatalog catalog = catalogs.get(factionId);
+        if (catalog == null) {
+            catalog = new AdversaryDoctrineCatalog(new PriorityDoctrine[]{new PriorityDoctrine(Global.getSettings().getFactionSpec(factionId).getFactionDoctrine())});
+            catalogs.put(factionId, catalog);
+        }
+        return catalog;
+    }
+
+    public int size() {
+        return doctrines.length;
+    }
+
+    PriorityDoctrine getDoctrine(int index) {
+        return doctrines[index];
+    }
+
+    // Index of the doctrine with the given fingerprint, or -1 if there is none
+    int indexOf(long fingerprint) {
+        for (int i = 0; i < doctrines.length; i++)
+            if (doctrines[i].getFingerprint() == fingerprint) return i;
+        return -1;
+    }
+
+    // Each caller gets its own sampler, so weights can be changed at runtime without touching the catalog
+    WeightedAliasSampler createSampler() {
+        int[] weights = new int[doctrines.length];
+        for (int i = 0; i < weights.length; i++) weights[i] = doctrines[i].weight;
+        return new WeightedAliasSampler(weights);
+    }
+
+    private static String[] resolve(String[] ids, int category, Logger logger, String factionId, String type) {
+        if (ids == null) return null;
+        ArrayList<String> resolved = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            String specId = AdversaryKnowledgeIndex.resolve(category, id);
+            if (specId == null) logger.warn("Unknown priority " + type + " for " + factionId + " dynamic doctrine: " + id);
+            else if (!resolved.contains(specId)) resolved.add(specId);
+        }
+        return resolved.isEmpty() ? null : resolved.toArray(new String[0]);
+    }
+}
@@ -8,91 +8,164 @@ import org.apache.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.tranquility.adversary.AdversaryRandom;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
-import java.util.Set;
+import java.util.*;
 
 import static org.tranquility.adversary.AdversaryStrings.*;
-import static org.tranquility.adversary.AdversaryUtil.addAdversaryColonyCrisis;
 
+// Applies priority doctrines to factions; scheduling is done by AdversaryFactionEngine
+// Instances are only left in older saves, where they were registered as listeners, and hand their state to the engine on load
 public class AdversaryDynamicDoctrine implements EconomyTickListener {
     protected String factionId; // TODO: change access modifier to private if doing save-breaking update
     protected byte elapsedMonths, delayInMonths;
+    // Index of the current doctrine in this faction's AdversaryDoctrineCatalog, and the seed for the next pick
+    // Both are only meaningful once priorityDoctrinePicker is null; a randomState of 0 is then a real state
+    protected int doctrineIndex;
+    protected long randomState;
+    // Only kept so older saves can still be loaded; migrated into the fields above and then cleared
     protected WeightedRandomPicker priorityDoctrinePicker;
     protected Random factionSeed;
 
-    public AdversaryDynamicDoctrine(String faction, byte elapsed, byte delay, JSONArray possibleDoctrines) throws JSONException {
-        factionId = faction;
-        elapsedMonths = elapsed;
-        delayInMonths = delay > 0 ? delay : (byte) 1;
-        priorityDoctrinePicker = new WeightedRandomPicker();
-        factionSeed = new Random();
-
-        // Iterating in reverse order so that the first doctrine in JSONArray is considered the selected doctrine
-        for (int i = possibleDoctrines.length() - 1; i >= 0; i--) {
-            JSONObject doctrine = possibleDoctrines.getJSONObject(i);
-            int weight = doctrine.optInt(SETTINGS_WEIGHT, 1);
-            if (weight > 0) priorityDoctrinePicker.add(new PriorityDoctrine(doctrine, weight));
-        }
-        priorityDoctrinePicker.ready(factionId);
-        refresh(); // Immediately apply the default doctrine
-        Global.getLogger(AdversaryDynamicDoctrine.class).info("Faction dynamic doctrine active for: " + factionId);
-    }
-
+    // Unused; the listener is removed as soon as its state is handed to the engine
     @Override
     public void reportEconomyTick(int iterIndex) {
-        addAdversaryColonyCrisis(); // HACK: More convenient to add the crisis mid-game using an existing listener
     }
 
     @Override
     public void reportEconomyMonthEnd() {
-        elapsedMonths++;
-        if (elapsedMonths >= delayInMonths) {
-            elapsedMonths = 0;
-            setPriorityDoctrine(priorityDoctrinePicker.pick(factionSeed));
+    }
+
+    // Hands this legacy listener's schedule and current doctrine over to the engine
+    void migrateTo(AdversaryFactionEngine engine) {
+        if (priorityDoctrinePicker != null) {
+            ArrayList<PriorityDoctrine> items = priorityDoctrinePicker.items;
+            if (!items.isEmpty())
+                doctrineIndex = Math.max(AdversaryDoctrineCatalog.get(factionId).indexOf(items.get(items.size() - 1).getFingerprint()), 0);
+            randomState = AdversaryRandom.seedFor("doctrine", factionId);
+            priorityDoctrinePicker = null;
+            factionSeed = null;
         }
+        engine.importDoctrine(factionId, delayInMonths, elapsedMonths, doctrineIndex, randomState);
     }
 
-    public void setDelay(byte newDelay) {
-        delayInMonths = newDelay;
-        Global.getLogger(AdversaryDynamicDoctrine.class).info("Set " + factionId + " dynamic doctrine delay to " + delayInMonths);
+    // Sets a faction's priority lists to a specific priority doctrine
+    // Only the differences are applied, and the ship role cache is only cleared if the priority ships changed
+    protected static void applyDoctrine(String factionId, PriorityDoctrine thisPriority) {
+        FactionAPI faction = Global.getSector().getFaction(factionId);
+        if (getFingerprint(faction) == thisPriority.getFingerprint()) return; // Already applied, e.g. refreshing after a save load
+        DerivedDoctrine derived = thisPriority.getDerived();
+        Logger doctrineLogger = Global.getLogger(AdversaryDynamicDoctrine.class);
+        syncDoctrineSettings(faction, thisPriority, doctrineLogger);
+
+        boolean shipsChanged = syncPrioritySet(faction.getPriorityShips(), derived.ships);
+        if (shipsChanged) infoPrioritySet(doctrineLogger, factionId, faction.getPriorityShips(), "ships");
+
+        if (syncPrioritySet(faction.getPriorityWeapons(), derived.weapons))
+            infoPrioritySet(doctrineLogger, factionId, faction.getPriorityWeapons(), "weapons");
+
+        if (syncPrioritySet(faction.getPriorityFighters(), derived.fighters))
+            infoPrioritySet(doctrineLogger, factionId, faction.getPriorityFighters(), "fighters");
+        derived.reportUnknown(faction);
+
+        // Required after any direct manipulation of faction ship lists
+        // Doctrines with the same priority ships keep the cache intact
+        // Fleet templates are keyed by doctrine and kept, so they are hit again when the faction returns to this one
+        if (shipsChanged) faction.clearShipRoleCache();
     }
 
-    // Sets this faction's priority lists to a specific priority doctrine
-    protected void setPriorityDoctrine(PriorityDoctrine thisPriority) {
+    /**
+     * Switches a faction to a doctrine using differences worked out ahead of time, finishing any steps not done yet.
+     * The ship role cache can't be warmed up ahead of the switch, so it is still cleared if the priority ships change.
+     *
+     * @return False if the faction's doctrine or priority lists changed since the switch was prepared; applyDoctrine()
+     * has to be used instead
+     */
+    protected static boolean applyPrepared(String factionId, PreparedSwitch prepared) {
         FactionAPI faction = Global.getSector().getFaction(factionId);
-        FactionDoctrineAPI factionDoctrine = faction.getDoctrine();
+        if (getFingerprint(faction) != prepared.fromFingerprint) return false;
+        while (!prepared.isDone()) prepared.step(faction);
+
         Logger doctrineLogger = Global.getLogger(AdversaryDynamicDoctrine.class);
+        syncDoctrineSettings(faction, prepared.doctrine, doctrineLogger);
+
+        boolean shipsChanged = prepared.apply(faction, AdversaryKnowledgeIndex.SHIPS);
+        if (shipsChanged) infoPrioritySet(doctrineLogger, factionId, faction.getPriorityShips(), "ships");
 
-        factionDoctrine.setWarships(thisPriority.warships);
-        factionDoctrine.setCarriers(thisPriority.carriers);
-        factionDoctrine.setPhaseShips(thisPriority.phaseShips);
-        doctrineLogger.info(factionId + " fleet composition set to " + factionDoctrine.getWarships() + "-" + factionDoctrine.getCarriers() + "-" + factionDoctrine.getPhaseShips());
+        if (prepared.apply(faction, AdversaryKnowledgeIndex.WEAPONS))
+            infoPrioritySet(doctrineLogger, factionId, faction.getPriorityWeapons(), "weapons");
 
-        factionDoctrine.setAggression(thisPriority.aggression);
-        doctrineLogger.info(factionId + " aggression set to " + factionDoctrine.getAggression());
+        if (prepared.apply(faction, AdversaryKnowledgeIndex.FIGHTERS))
+            infoPrioritySet(doctrineLogger, factionId, faction.getPriorityFighters(), "fighters");
 
-        faction.getPriorityShips().clear();
-        if (thisPriority.priorityShips != null && thisPriority.priorityShips.length != 0)
-            Collections.addAll(faction.getPriorityShips(), thisPriority.priorityShips);
-        infoPrioritySet(doctrineLogger, faction.getPriorityShips(), "ships");
+        if (shipsChanged) faction.clearShipRoleCache();
+        return true;
+    }
+
+    // Fleet composition and aggression
+    protected static void syncDoctrineSettings(FactionAPI faction, PriorityDoctrine thisPriority, Logger doctrineLogger) {
+        String factionId = faction.getId();
+        FactionDoctrineAPI factionDoctrine = faction.getDoctrine();
+        if (factionDoctrine.getWarships() != thisPriority.warships || factionDoctrine.getCarriers() != thisPriority.carriers || factionDoctrine.getPhaseShips() != thisPriority.phaseShips) {
+            factionDoctrine.setWarships(thisPriority.warships);
+            factionDoctrine.setCarriers(thisPriority.carriers);
+            factionDoctrine.setPhaseShips(thisPriority.phaseShips);
+            doctrineLogger.info(factionId + " fleet composition set to " + factionDoctrine.getWarships() + "-" + factionDoctrine.getCarriers() + "-" + factionDoctrine.getPhaseShips());
+        }
+
+        if (factionDoctrine.getAggression() != thisPriority.aggression) {
+            factionDoctrine.setAggression(thisPriority.aggression);
+            doctrineLogger.info(factionId + " aggression set to " + factionDoctrine.getAggression());
+        }
+    }
+
+    protected static Set<String> getPrioritySet(FactionAPI faction, int category) {
+        switch (category) {
+            case AdversaryKnowledgeIndex.SHIPS:
+                return faction.getPriorityShips();
+            case AdversaryKnowledgeIndex.WEAPONS:
+                return faction.getPriorityWeapons();
+            default:
+                return faction.getPriorityFighters();
+        }
+    }
+
+    // Makes a faction's priority set match the given IDs, touching only the differences; returns true if anything changed
+    protected static boolean syncPrioritySet(Set<String> current, Set<String> target) {
+        if (current.equals(target)) return false;
+
+        current.retainAll(target);
+        current.addAll(target);
+        return true;
+    }
+
+    // Order-independent fingerprint of a faction's currently-applied doctrine and priority lists
+    protected static long getFingerprint(FactionAPI faction) {
+        FactionDoctrineAPI doctrine = faction.getDoctrine();
+        long hash = fingerprintHeader(doctrine.getWarships(), doctrine.getCarriers(), doctrine.getPhaseShips(), doctrine.getAggression());
+        hash = hash * 31 + fingerprintIds(faction.getPriorityShips(), 1);
+        hash = hash * 31 + fingerprintIds(faction.getPriorityWeapons(), 2);
+        return hash * 31 + fingerprintIds(faction.getPriorityFighters(), 3);
+    }
 
-        faction.getPriorityWeapons().clear();
-        if (thisPriority.priorityWeapons != null && thisPriority.priorityWeapons.length != 0)
-            Collections.addAll(faction.getPriorityWeapons(), thisPriority.priorityWeapons);
-        infoPrioritySet(doctrineLogger, faction.getPriorityWeapons(), "weapons");
+    protected static long fingerprintHeader(int warships, int carriers, int phaseShips, int aggression) {
+        return mix(((long) warships << 24) | ((long) carriers << 16) | ((long) phaseShips << 8) | aggression);
+    }
 
-        faction.getPriorityFighters().clear();
-        if (thisPriority.priorityFighters != null && thisPriority.priorityFighters.length != 0)
-            Collections.addAll(faction.getPriorityFighters(), thisPriority.priorityFighters);
-        infoPrioritySet(doctrineLogger, faction.getPriorityFighters(), "fighters");
+    protected static long fingerprintIds(Iterable<String> ids, long salt) {
+        long sum = 0;
+        if (ids != null) for (String id : ids) sum += mix(id.hashCode() ^ (salt << 32));
+        return sum;
+    }
 
-        faction.clearShipRoleCache(); // Required after any direct manipulation of faction ship lists
+    // SplitMix64 finalizer
+    protected static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 
-    protected void infoPrioritySet(Logger thisLogger, Set<String> set, String text) {
+    protected static void infoPrioritySet(Logger thisLogger, String factionId, Set<String> set, String text) {
         if (set.isEmpty()) thisLogger.info(factionId + " has no priority " + text);
         else {
             StringBuilder contents = new StringBuilder();
@@ -101,60 +174,131 @@ public class AdversaryDynamicDoctrine implements EconomyTickListener {
         }
     }
 
-    // Refreshes the currently-set doctrine
-    public void refresh() {
-        setPriorityDoctrine(priorityDoctrinePicker.items.get(priorityDoctrinePicker.items.size() - 1));
+    // A doctrine's priority lists as sets, ready to be synced into the faction
+    // Built once per catalog doctrine and kept on it, so switching back to a doctrine reuses them
+    protected static class DerivedDoctrine {
+        // Unknown-ID reports already logged this session, so long campaigns don't repeat them on every apply
+        private static final HashSet<String> reported = new HashSet<>();
+
+        final HashSet<String> ships = new HashSet<>(), weapons = new HashSet<>(), fighters = new HashSet<>();
+        final long fingerprint; // Matches getFingerprint(FactionAPI) once applied
+        private final PriorityDoctrine doctrine;
+
+        DerivedDoctrine(PriorityDoctrine doctrine) {
+            this.doctrine = doctrine;
+            if (doctrine.priorityShips != null) Collections.addAll(ships, doctrine.priorityShips);
+            if (doctrine.priorityWeapons != null) Collections.addAll(weapons, doctrine.priorityWeapons);
+            if (doctrine.priorityFighters != null) Collections.addAll(fighters, doctrine.priorityFighters);
+
+            long hash = fingerprintHeader(doctrine.warships, doctrine.carriers, doctrine.phaseShips, doctrine.aggression);
+            hash = hash * 31 + fingerprintIds(ships, 1);
+            hash = hash * 31 + fingerprintIds(weapons, 2);
+            fingerprint = hash * 31 + fingerprintIds(fighters, 3);
+        }
+
+        Set<String> get(int category) {
+            switch (category) {
+                case AdversaryKnowledgeIndex.SHIPS:
+                    return ships;
+                case AdversaryKnowledgeIndex.WEAPONS:
+                    return weapons;
+                default:
+                    return fighters;
+            }
+        }
+
+        // Every priority ID is applied, as always; the ones the faction doesn't know have no effect, so they are
+        // reported (see settings.json), once per faction and set of unknown IDs
+        void reportUnknown(FactionAPI faction) {
+            for (int category = AdversaryKnowledgeIndex.SHIPS; category <= AdversaryKnowledgeIndex.FIGHTERS; category++)
+                reportUnknown(faction, category);
+        }
+
+        void reportUnknown(FactionAPI faction, int category) {
+            long[] unknown = doctrine.getPriorityBits(category).clone();
+            if (AdversaryKnowledgeIndex.isEmpty(unknown)) return;
+            AdversaryKnowledgeIndex.andNot(unknown, AdversaryKnowledgeIndex.getKnownBits(faction, category));
+            if (AdversaryKnowledgeIndex.isEmpty(unknown)) return;
+
+            ArrayList<String> unknownIds = new ArrayList<>();
+            AdversaryKnowledgeIndex.decode(category, unknown, unknownIds);
+            String report = faction.getId() + " does not know priority IDs " + unknownIds;
+            if (reported.add(report)) Global.getLogger(AdversaryDynamicDoctrine.class).info(report);
+        }
     }
 
-    // A lighter, nested WeightedRandomPicker designed specifically for this class
-    // This Picker will not select the same element twice in a row
-    protected static class WeightedRandomPicker {
-        // The last element in items is considered the selected doctrine
-        private final ArrayList<PriorityDoctrine> items = new ArrayList<>();
-        private int total = 0;
+    // A switch to an upcoming doctrine, worked out ahead of it one priority category per step: the differences to the
+    // faction's current priority lists, and the report of unknown IDs
+    protected static class PreparedSwitch {
+        private static final int NUM_STEPS = 3;
+
+        final PriorityDoctrine doctrine;
+        private final long fromFingerprint; // The faction's fingerprint the differences were worked out against
+        private final String[][] toAdd = new String[NUM_STEPS][], toRemove = new String[NUM_STEPS][];
+        private int steps;
 
-        public void add(PriorityDoctrine item) {
-            if (item.weight <= 0) return;
-            items.add(item);
-            total += item.weight;
+        PreparedSwitch(FactionAPI faction, PriorityDoctrine doctrine) {
+            this.doctrine = doctrine;
+            fromFingerprint = getFingerprint(faction);
         }
 
-        // Readies the Picker for use; shouldn't add any more elements after calling this function
-        public void ready(String factionId) {
-            if (items.isEmpty())
-                add(new PriorityDoctrine(Global.getSettings().getFactionSpec(factionId).getFactionDoctrine()));
-            items.trimToSize();
-            if (items.size() > 1) total -= items.get(items.size() - 1).weight;
+        boolean isDone() {
+            return steps == NUM_STEPS;
         }
 
-        public PriorityDoctrine pick(Random seed) {
-            int random = seed.nextInt(total + 1), weightSoFar = 0, index = 0;
-            while (index < items.size()) {
-                weightSoFar += items.get(index).weight;
-                if (random <= weightSoFar) break;
-                index++;
-            }
-            PriorityDoctrine selected = items.get(index);
-
-            // Ensure selected doctrine does not get picked again for the next pick()
-            // Not necessary if only one doctrine exists
-            if (items.size() > 1) {
-                PriorityDoctrine previous = items.get(items.size() - 1);
-                items.set(index, previous);
-                items.set(items.size() - 1, selected);
-                total += previous.weight - selected.weight;
-            }
+        void step(FactionAPI faction) {
+            int category = steps++;
+            Set<String> current = getPrioritySet(faction, category);
+            Set<String> target = doctrine.getDerived().get(category);
+            ArrayList<String> added = new ArrayList<>(), removed = new ArrayList<>();
+            for (String id : target) if (!current.contains(id)) added.add(id);
+            for (String id : current) if (!target.contains(id)) removed.add(id);
+            toAdd[category] = added.toArray(new String[0]);
+            toRemove[category] = removed.toArray(new String[0]);
+            doctrine.getDerived().reportUnknown(faction, category);
+        }
 
-            return selected;
+        // Returns true if anything changed
+        private boolean apply(FactionAPI faction, int category) {
+            Set<String> current = getPrioritySet(faction, category);
+            for (String id : toRemove[category]) current.remove(id);
+            Collections.addAll(current, toAdd[category]);
+            return toAdd[category].length > 0 || toRemove[category].length > 0;
         }
     }
 
+    // Legacy doctrine picker; only its fields are needed to load older saves
+    protected static class WeightedRandomPicker {
+        // The last element in items was the selected doctrine
+        private final ArrayList<PriorityDoctrine> items = new ArrayList<>();
+        private int total = 0;
+    }
+
     // A static nested class to make managing a faction's current doctrine simpler
     protected static class PriorityDoctrine {
         public int weight;
         public byte warships, carriers, phaseShips;
         public byte aggression;
         public String[] priorityShips, priorityWeapons, priorityFighters;
+        private transient DerivedDoctrine derived; // Built on first use; catalog doctrines are shared by every apply
+        private transient long[][] priorityBits; // Per AdversaryKnowledgeIndex category
+
+        public long[] getPriorityBits(int category) {
+            if (priorityBits == null) {
+                priorityBits = new long[][]{AdversaryKnowledgeIndex.toBits(AdversaryKnowledgeIndex.SHIPS, priorityShips), AdversaryKnowledgeIndex.toBits(AdversaryKnowledgeIndex.WEAPONS, priorityWeapons), AdversaryKnowledgeIndex.toBits(AdversaryKnowledgeIndex.FIGHTERS, priorityFighters)};
+            }
+            return priorityBits[category];
+        }
+
+        public DerivedDoctrine getDerived() {
+            if (derived == null) derived = new DerivedDoctrine(this);
+            return derived;
+        }
+
+        // Matches getFingerprint(FactionAPI) once this doctrine has been applied
+        public long getFingerprint() {
+            return getDerived().fingerprint;
+        }
 
         // Default doctrine, using a faction's current fleet composition/doctrine settings
         public PriorityDoctrine(FactionDoctrineAPI defaultDoctrine) {
@@ -0,0 +1,517 @@
+package org.tranquility.adversary.scripts;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.BaseCampaignEventListener;
+import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.campaign.listeners.EconomyTickListener;
+import com.fs.starfarer.api.campaign.listeners.ListenerManagerAPI;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tranquility.adversary.AdversaryRandom;
+
+import java.util.*;
+
+import static org.tranquility.adversary.AdversaryStrings.*;
+import static org.tranquility.adversary.AdversaryUtil.addAdversaryColonyCrisis;
+
+/**
+ * Runs the dynamic doctrines and blueprint stealing of every configured faction from a single economy listener.
+ * Per-faction schedules are kept in parallel arrays (a delay of 0 means the feature is disabled), and a timing wheel
+ * with one slot per month holds the factions due that month, so a month end only visits factions that act.
+ */
+public class AdversaryFactionEngine implements EconomyTickListener {
+    public static String KEY = "$adversary_factionEngine";
+    // Larger than any byte delay, so a slot never holds entries due in two different months
+    private static final int WHEEL_SIZE = 128;
+    private static final int DOCTRINE = 0, STEAL = 1;
+
+    // Picks each faction's next doctrine as soon as the current one is applied, so it is known ahead of the switch
+    public static boolean LOOK_AHEAD = true;
+    // How many factions without an upcoming doctrine (e.g. after its weight was set to 0) get one picked per economy tick
+    public static int PICKS_PER_TICK = 1;
+    // How many priority categories of each faction's upcoming doctrine are diffed per economy tick ahead of the switch;
+    // a switch has three, and any left are done at the switch
+    public static int PREPARE_STEPS_PER_TICK = 1;
+    // Faction memory key holding the index of the upcoming doctrine in the faction's catalog, for intel or other mods
+    public static String UPCOMING_DOCTRINE_KEY = "$adversary_upcomingDoctrine";
+
+    // Factions from the settings.json schedule block, parsed on application load
+    private static final ArrayList<Schedule> schedules = new ArrayList<>();
+
+    protected int month; // Month ends since this engine was created
+    protected int numFactions;
+    protected String[] factionIds = new String[0];
+    protected byte[] doctrineDelays = new byte[0], stealDelays = new byte[0];
+    protected int[] nextDoctrineMonths = new int[0], nextStealMonths = new int[0];
+    protected int[] doctrineIndices = new int[0];
+    // AdversaryRandom states (default gamma), starting from the sector's doctrine stream; seeded as soon as a faction is
+    // added, so every entry is a real state, 0 included
+    protected long[] randomStates = new long[0];
+    protected String[][] stealTargets = new String[0][];
+    protected int[] upcomingDoctrines = new int[0]; // -1 if not picked yet; null in saves from before look-ahead
+
+    // Entries are (faction index << 1 | DOCTRINE/STEAL); stale entries are skipped when their slot comes up
+    protected transient int[][] wheel;
+    protected transient int[] wheelSizes;
+    protected transient WeightedAliasSampler[] samplers;
+    protected transient int pickCursor;
+    protected transient AdversaryDynamicDoctrine.PreparedSwitch[] preparedSwitches; // Per faction, for its upcoming doctrine
+    // Per stealer and target ("stealer>target"), the blueprints already gone through since the game was loaded
+    protected transient HashMap<String, AdversaryBlueprintStealer.AbsorbedBlueprints> absorbedBlueprints;
+    // Stolen blueprints and their usage in spawned fleets, per faction with blueprint stealing enabled; null in saves
+    // from before it existed. An entry is dropped when its faction's stealing is disabled
+    protected HashMap<String, AdversaryStolenKnowledge> stolenKnowledge;
+    protected transient UsageListener usageListener;
+
+    public static AdversaryFactionEngine get() {
+        return (AdversaryFactionEngine) Global.getSector().getMemoryWithoutUpdate().get(KEY);
+    }
+
+    public static AdversaryFactionEngine getOrCreate() {
+        AdversaryFactionEngine engine = get();
+        if (engine == null) {
+            engine = new AdversaryFactionEngine();
+            Global.getSector().getMemoryWithoutUpdate().set(KEY, engine);
+            Global.getSector().getListenerManager().addListener(engine);
+        }
+        return engine;
+    }
+
+    // Parses the per-faction schedule block and loads the doctrine catalog of each listed faction
+    public static void loadSchedules(JSONObject block) throws JSONException {
+        schedules.clear();
+        if (block == null) return;
+        for (Iterator<?> iter = block.keys(); iter.hasNext(); ) {
+            String factionId = (String) iter.next();
+            JSONObject entry = block.getJSONObject(factionId);
+            Schedule schedule = new Schedule(factionId, entry.optInt(SETTINGS_DYNAMIC_DOCTRINE_DELAY, 0), entry.optInt(SETTINGS_BLUEPRINT_STEALING_DELAY, 0), toStrings(entry.optJSONArray(SETTINGS_STEALS_FROM_FACTIONS)), entry.optInt(SETTINGS_STOLEN_BLUEPRINT_CAP, 0));
+            if (!entry.isNull(SETTINGS_POSSIBLE_DOCTRINES))
+                AdversaryDoctrineCatalog.load(factionId, entry.getJSONArray(SETTINGS_POSSIBLE_DOCTRINES));
+            schedules.add(schedule);
+        }
+    }
+
+    // Applies the settings.json schedule block; factions no longer listed there keep running until disabled
+    public void applySchedules(boolean newGame) {
+        for (Schedule schedule : schedules) {
+            setDynamicDoctrine(schedule.factionId, schedule.doctrineDelay, newGame);
+            setBlueprintStealing(schedule.factionId, schedule.stealDelay, schedule.targetIds, newGame);
+            setStolenBlueprintCap(schedule.factionId, schedule.stolenCap);
+        }
+    }
+
+    public static String[] toStrings(JSONArray array) throws JSONException {
+        if (array == null) return new String[0];
+        String[] strings = new String[array.length()];
+        for (int i = 0; i < strings.length; i++) strings[i] = array.getString(i);
+        return strings;
+    }
+
+    /**
+     * Enables, reschedules, or disables (delay of 0 or less) a faction's dynamic doctrine.
+     * Enabling it starts the faction on the first doctrine of its catalog.
+     *
+     * @param newGame Starting the time pass immediately ends a month, which new games need to account for
+     */
+    public void setDynamicDoctrine(String factionId, int delay, boolean newGame) {
+        int faction = indexOf(factionId, true);
+        byte newDelay = toDelay(delay);
+        byte oldDelay = doctrineDelays[faction];
+        if (newDelay == oldDelay) return;
+
+        doctrineDelays[faction] = newDelay;
+        if (newDelay == 0) {
+            setUpcomingDoctrine(faction, -1);
+            Global.getLogger(AdversaryFactionEngine.class).info("Faction dynamic doctrine disabled for: " + factionId);
+            return;
+        }
+
+        if (oldDelay == 0) {
+            doctrineIndices[faction] = 0;
+            nextDoctrineMonths[faction] = month + newDelay + (newGame ? 1 : 0);
+            applyDoctrine(faction);
+            if (LOOK_AHEAD) setUpcomingDoctrine(faction, pickDoctrine(faction));
+            Global.getLogger(AdversaryFactionEngine.class).info("Faction dynamic doctrine active for: " + factionId);
+        } else {
+            nextDoctrineMonths[faction] = Math.max(nextDoctrineMonths[faction] - oldDelay + newDelay, month + 1);
+            Global.getLogger(AdversaryFactionEngine.class).info("Set " + factionId + " dynamic doctrine delay to " + newDelay);
+        }
+        schedule(faction, DOCTRINE, nextDoctrineMonths[faction]);
+    }
+
+    // Enables, reschedules, or disables (delay of 0 or less) a faction's blueprint stealing
+    public void setBlueprintStealing(String factionId, int delay, String[] targetIds, boolean newGame) {
+        int faction = indexOf(factionId, true);
+        byte newDelay = toDelay(delay);
+        byte oldDelay = stealDelays[faction];
+        stealTargets[faction] = targetIds;
+        if (newDelay == 0) dropStolenKnowledge(factionId); // Also cleans up saves that kept it for disabled factions
+        if (newDelay == oldDelay) return;
+
+        stealDelays[faction] = newDelay;
+        if (newDelay == 0) {
+            Global.getLogger(AdversaryFactionEngine.class).info("Faction blueprint stealer disabled for: " + factionId);
+            return;
+        }
+
+        if (oldDelay == 0) {
+            nextStealMonths[faction] = month + newDelay + (newGame ? 1 : 0);
+            Global.getLogger(AdversaryFactionEngine.class).info("Faction blueprint stealer active for: " + factionId);
+        } else {
+            nextStealMonths[faction] = Math.max(nextStealMonths[faction] - oldDelay + newDelay, month + 1);
+            Global.getLogger(AdversaryFactionEngine.class).info("Set " + factionId + " blueprint stealer delay to " + newDelay);
+        }
+        schedule(faction, STEAL, nextStealMonths[faction]);
+    }
+
+    public boolean hasDynamicDoctrine(String factionId) {
+        int faction = indexOf(factionId, false);
+        return faction != -1 && doctrineDelays[faction] > 0;
+    }
+
+    // Changes a doctrine's weight for a faction until the game is reloaded; 0 or less stops it from being picked
+    public void setDoctrineWeight(String factionId, int doctrineIndex, int weight) {
+        int faction = indexOf(factionId, false);
+        if (faction == -1) return;
+        WeightedAliasSampler sampler = getSampler(faction);
+        if (doctrineIndex < 0 || doctrineIndex >= sampler.size()) return;
+        sampler.setWeight(doctrineIndex, weight);
+        if (weight <= 0 && getUpcomingDoctrines()[faction] == doctrineIndex) setUpcomingDoctrine(faction, -1); // Picked again on the next tick
+    }
+
+    /**
+     * @return Index of the doctrine the faction switches to next in its AdversaryDoctrineCatalog, or -1 if not known yet
+     */
+    public int getUpcomingDoctrine(String factionId) {
+        int faction = indexOf(factionId, false);
+        return faction == -1 || doctrineDelays[faction] == 0 ? -1 : getUpcomingDoctrines()[faction];
+    }
+
+    // Months until the faction's next doctrine switch, or -1 if its dynamic doctrine is disabled
+    public int getMonthsUntilDoctrineChange(String factionId) {
+        int faction = indexOf(factionId, false);
+        return faction == -1 || doctrineDelays[faction] == 0 ? -1 : nextDoctrineMonths[faction] - month;
+    }
+
+    // Older saves registered one listener per faction and feature; their state is moved into this engine
+    public void migrateLegacyListeners() {
+        ListenerManagerAPI listMan = Global.getSector().getListenerManager();
+        for (AdversaryDynamicDoctrine legacy : listMan.getListeners(AdversaryDynamicDoctrine.class))
+            legacy.migrateTo(this);
+        listMan.removeListenerOfClass(AdversaryDynamicDoctrine.class);
+        for (AdversaryBlueprintStealer legacy : listMan.getListeners(AdversaryBlueprintStealer.class))
+            legacy.migrateTo(this);
+        listMan.removeListenerOfClass(AdversaryBlueprintStealer.class);
+    }
+
+    // Re-applies every enabled faction's current doctrine, since restarting Starsector resets faction doctrines
+    public void refresh() {
+        for (int i = 0; i < numFactions; i++)
+            if (doctrineDelays[i] > 0) applyDoctrine(i);
+    }
+
+    // Takes over the state of a listener from before this engine existed
+    void importDoctrine(String factionId, byte delay, byte elapsed, int doctrineIndex, long randomState) {
+        int faction = indexOf(factionId, true);
+        doctrineDelays[faction] = toDelay(delay);
+        doctrineIndices[faction] = doctrineIndex;
+        randomStates[faction] = randomState;
+        nextDoctrineMonths[faction] = month + Math.max(doctrineDelays[faction] - elapsed, 1);
+        samplers = null;
+        setUpcomingDoctrine(faction, -1);
+        schedule(faction, DOCTRINE, nextDoctrineMonths[faction]);
+    }
+
+    void importStealer(String factionId, byte delay, byte elapsed, String[] targetIds) {
+        int faction = indexOf(factionId, true);
+        stealDelays[faction] = toDelay(delay);
+        stealTargets[faction] = targetIds;
+        nextStealMonths[faction] = month + Math.max(stealDelays[faction] - elapsed, 1);
+        schedule(faction, STEAL, nextStealMonths[faction]);
+    }
+
+    @Override
+    public void reportEconomyTick(int iterIndex) {
+        addAdversaryColonyCrisis(); // HACK: More convenient to add the crisis mid-game using an existing listener
+        if (LOOK_AHEAD) {
+            pickUpcomingDoctrines();
+            prepareUpcomingDoctrines();
+        }
+        updateUsageListener();
+    }
+
+    // Spreads the look-ahead picks that couldn't be made at the switch over economy ticks, a few factions at a time
+    protected void pickUpcomingDoctrines() {
+        int[] upcoming = getUpcomingDoctrines();
+        for (int i = 0, picked = 0; i < numFactions && picked < PICKS_PER_TICK; i++) {
+            int faction = pickCursor++ % numFactions;
+            if (doctrineDelays[faction] == 0 || upcoming[faction] != -1) continue;
+            setUpcomingDoctrine(faction, pickDoctrine(faction));
+            picked++;
+        }
+    }
+
+    // Works out the switch to each faction's upcoming doctrine over the economy ticks before it
+    protected void prepareUpcomingDoctrines() {
+        int[] upcoming = getUpcomingDoctrines();
+        AdversaryDynamicDoctrine.PreparedSwitch[] prepared = getPreparedSwitches();
+        for (int faction = 0; faction < numFactions; faction++) {
+            if (doctrineDelays[faction] == 0 || upcoming[faction] == -1) continue;
+            FactionAPI factionApi = Global.getSector().getFaction(factionIds[faction]);
+            AdversaryDoctrineCatalog catalog = AdversaryDoctrineCatalog.get(factionIds[faction]);
+            if (factionApi == null || upcoming[faction] >= catalog.size()) continue; // Shrunk catalogs are handled at the switch
+            if (prepared[faction] == null)
+                prepared[faction] = new AdversaryDynamicDoctrine.PreparedSwitch(factionApi, catalog.getDoctrine(upcoming[faction]));
+            for (int i = 0; i < PREPARE_STEPS_PER_TICK && !prepared[faction].isDone(); i++)
+                prepared[faction].step(factionApi);
+        }
+    }
+
+    @Override
+    public void reportEconomyMonthEnd() {
+        month++;
+        if (wheel == null) rebuildWheel();
+
+        int slot = month & (WHEEL_SIZE - 1);
+        int count = wheelSizes[slot];
+        if (count == 0) return;
+        int[] due = Arrays.copyOf(wheel[slot], count);
+        wheelSizes[slot] = 0;
+
+        for (int entry : due) {
+            int faction = entry >> 1;
+            if ((entry & 1) == DOCTRINE) {
+                if (doctrineDelays[faction] == 0 || nextDoctrineMonths[faction] != month) continue;
+                rotateDoctrine(faction);
+                nextDoctrineMonths[faction] = month + doctrineDelays[faction];
+                schedule(faction, DOCTRINE, nextDoctrineMonths[faction]);
+            } else {
+                if (stealDelays[faction] == 0 || nextStealMonths[faction] != month) continue;
+                stealBlueprints(faction);
+                nextStealMonths[faction] = month + stealDelays[faction];
+                schedule(faction, STEAL, nextStealMonths[faction]);
+            }
+        }
+    }
+
+    // Only blueprints the targets learned since the last run are considered, and they are added as one batch
+    protected void stealBlueprints(int faction) {
+        if (absorbedBlueprints == null) absorbedBlueprints = new HashMap<>();
+        String factionId = factionIds[faction];
+        long[][] batch = AdversaryBlueprintStealer.newBatch();
+        for (String id : stealTargets[faction]) {
+            FactionAPI target = Global.getSector().getFaction(id);
+            if (target == null) continue;
+            String key = factionId + '>' + id;
+            AdversaryBlueprintStealer.AbsorbedBlueprints absorbed = absorbedBlueprints.get(key);
+            if (absorbed == null) {
+                absorbed = new AdversaryBlueprintStealer.AbsorbedBlueprints();
+                absorbedBlueprints.put(key, absorbed);
+            }
+            AdversaryBlueprintStealer.collectNewBlueprints(target, absorbed, batch);
+        }
+
+        FactionAPI stealer = Global.getSector().getFaction(factionId);
+        AdversaryStolenKnowledge knowledge = getStolenKnowledge(factionId);
+        knowledge.excludeEvicted(batch);
+        int added = AdversaryBlueprintStealer.stealBlueprints(stealer, batch);
+        Global.getLogger(AdversaryFactionEngine.class).info(factionId + " has stolen " + added + " blueprints from " + Arrays.toString(stealTargets[faction]) + "!");
+        if (added == 0) return;
+
+        knowledge.recordStolen(batch);
+        knowledge.enforceCap(stealer);
+        knowledgeChanged(faction, stealer);
+    }
+
+    // Sets how many stolen blueprints a faction may keep (0 or less for no cap), forgetting the least-used ones if needed
+    // Only applies to factions with blueprint stealing enabled, so call it after setBlueprintStealing()
+    public void setStolenBlueprintCap(String factionId, int cap) {
+        int index = indexOf(factionId, false);
+        if (index == -1 || stealDelays[index] == 0) return;
+
+        AdversaryStolenKnowledge knowledge = getStolenKnowledge(factionId);
+        knowledge.setCap(cap);
+        FactionAPI faction = Global.getSector().getFaction(factionId);
+        if (faction != null && knowledge.enforceCap(faction)) knowledgeChanged(index, faction);
+    }
+
+    protected AdversaryStolenKnowledge getStolenKnowledge(String factionId) {
+        if (stolenKnowledge == null) stolenKnowledge = new HashMap<>();
+        AdversaryStolenKnowledge knowledge = stolenKnowledge.get(factionId);
+        if (knowledge == null) {
+            knowledge = new AdversaryStolenKnowledge();
+            stolenKnowledge.put(factionId, knowledge);
+        }
+        updateUsageListener();
+        return knowledge;
+    }
+
+    // The faction keeps the blueprints it stole, but they are no longer tracked or evicted
+    protected void dropStolenKnowledge(String factionId) {
+        if (stolenKnowledge == null || stolenKnowledge.remove(factionId) == null) return;
+        updateUsageListener();
+    }
+
+    // Called once per batch of known ships/weapons/fighters changes
+    protected void knowledgeChanged(int faction, FactionAPI factionApi) {
+        factionApi.clearShipRoleCache();
+        AdversaryFleetTemplateCache.invalidate(factionIds[faction]);
+        getPreparedSwitches()[faction] = null; // Its unknown-ID reports are out of date
+        // Added or removed hulls/weapons/fighters may be on the current doctrine's priority lists
+        if (doctrineDelays[faction] > 0) applyDoctrine(faction);
+    }
+
+    // Only listens while some faction is stealing; transient listeners also need to be re-added after loading a save
+    protected void updateUsageListener() {
+        boolean needed = stolenKnowledge != null && !stolenKnowledge.isEmpty();
+        if (needed && usageListener == null) {
+            usageListener = new UsageListener(this);
+            Global.getSector().addTransientListener(usageListener);
+        } else if (!needed && usageListener != null) {
+            Global.getSector().removeListener(usageListener);
+            usageListener = null;
+        }
+    }
+
+    protected void rotateDoctrine(int faction) {
+        int picked = getUpcomingDoctrines()[faction];
+        if (picked == -1) picked = pickDoctrine(faction);
+        if (picked != -1) {
+            AdversaryDynamicDoctrine.PreparedSwitch prepared = getPreparedSwitches()[faction];
+            doctrineIndices[faction] = picked;
+            if (prepared == null || prepared.doctrine != AdversaryDoctrineCatalog.get(factionIds[faction]).getDoctrine(picked) || !AdversaryDynamicDoctrine.applyPrepared(factionIds[faction], prepared))
+                applyDoctrine(faction);
+        }
+        setUpcomingDoctrine(faction, LOOK_AHEAD ? pickDoctrine(faction) : -1);
+    }
+
+    // Never picks the same doctrine twice in a row
+    protected int pickDoctrine(int faction) {
+        AdversaryRandom random = new AdversaryRandom(randomStates[faction]);
+        int picked = getSampler(faction).sample(random, doctrineIndices[faction]);
+        randomStates[faction] = random.getState();
+        return picked;
+    }
+
+    protected void setUpcomingDoctrine(int faction, int doctrineIndex) {
+        if (doctrineIndex >= AdversaryDoctrineCatalog.get(factionIds[faction]).size()) doctrineIndex = -1;
+        getUpcomingDoctrines()[faction] = doctrineIndex;
+        getPreparedSwitches()[faction] = null;
+        FactionAPI factionApi = Global.getSector().getFaction(factionIds[faction]);
+        if (factionApi == null) return;
+        if (doctrineIndex == -1) factionApi.getMemoryWithoutUpdate().unset(UPCOMING_DOCTRINE_KEY);
+        else factionApi.getMemoryWithoutUpdate().set(UPCOMING_DOCTRINE_KEY, doctrineIndex);
+    }
+
+    private int[] getUpcomingDoctrines() {
+        if (upcomingDoctrines == null || upcomingDoctrines.length < factionIds.length) {
+            int oldLength = upcomingDoctrines == null ? 0 : upcomingDoctrines.length;
+            upcomingDoctrines = upcomingDoctrines == null ? new int[factionIds.length] : Arrays.copyOf(upcomingDoctrines, factionIds.length);
+            Arrays.fill(upcomingDoctrines, oldLength, upcomingDoctrines.length, -1);
+        }
+        return upcomingDoctrines;
+    }
+
+    private AdversaryDynamicDoctrine.PreparedSwitch[] getPreparedSwitches() {
+        if (preparedSwitches == null || preparedSwitches.length < factionIds.length)
+            preparedSwitches = preparedSwitches == null ? new AdversaryDynamicDoctrine.PreparedSwitch[factionIds.length] : Arrays.copyOf(preparedSwitches, factionIds.length);
+        return preparedSwitches;
+    }
+
+    protected void applyDoctrine(int faction) {
+        AdversaryDoctrineCatalog catalog = AdversaryDoctrineCatalog.get(factionIds[faction]);
+        if (doctrineIndices[faction] < 0 || doctrineIndices[faction] >= catalog.size())
+            doctrineIndices[faction] = 0; // The catalog shrank since this game was saved
+        AdversaryDynamicDoctrine.applyDoctrine(factionIds[faction], catalog.getDoctrine(doctrineIndices[faction]));
+    }
+
+    protected WeightedAliasSampler getSampler(int faction) {
+        if (samplers == null || samplers.length < numFactions) {
+            WeightedAliasSampler[] grown = new WeightedAliasSampler[factionIds.length];
+            if (samplers != null) System.arraycopy(samplers, 0, grown, 0, samplers.length);
+            samplers = grown;
+        }
+        if (samplers[faction] == null)
+            samplers[faction] = AdversaryDoctrineCatalog.get(factionIds[faction]).createSampler();
+        return samplers[faction];
+    }
+
+    protected int indexOf(String factionId, boolean create) {
+        for (int i = 0; i < numFactions; i++)
+            if (factionIds[i].equals(factionId)) return i;
+        if (!create) return -1;
+
+        if (numFactions == factionIds.length) {
+            int capacity = Math.max(4, numFactions * 2);
+            factionIds = Arrays.copyOf(factionIds, capacity);
+            doctrineDelays = Arrays.copyOf(doctrineDelays, capacity);
+            stealDelays = Arrays.copyOf(stealDelays, capacity);
+            nextDoctrineMonths = Arrays.copyOf(nextDoctrineMonths, capacity);
+            nextStealMonths = Arrays.copyOf(nextStealMonths, capacity);
+            doctrineIndices = Arrays.copyOf(doctrineIndices, capacity);
+            randomStates = Arrays.copyOf(randomStates, capacity);
+            stealTargets = Arrays.copyOf(stealTargets, capacity);
+        }
+        factionIds[numFactions] = factionId;
+        randomStates[numFactions] = AdversaryRandom.seedFor("doctrine", factionId);
+        stealTargets[numFactions] = new String[0];
+        return numFactions++;
+    }
+
+    private void schedule(int faction, int kind, int dueMonth) {
+        if (wheel == null) {
+            rebuildWheel(); // Already includes this entry
+            return;
+        }
+        int slot = dueMonth & (WHEEL_SIZE - 1);
+        if (wheel[slot] == null) wheel[slot] = new int[4];
+        else if (wheelSizes[slot] == wheel[slot].length) wheel[slot] = Arrays.copyOf(wheel[slot], wheelSizes[slot] * 2);
+        wheel[slot][wheelSizes[slot]++] = faction << 1 | kind;
+    }
+
+    // The wheel is not saved; it is rebuilt from the due months after loading a save
+    private void rebuildWheel() {
+        wheel = new int[WHEEL_SIZE][];
+        wheelSizes = new int[WHEEL_SIZE];
+        for (int i = 0; i < numFactions; i++) {
+            if (doctrineDelays[i] > 0) schedule(i, DOCTRINE, nextDoctrineMonths[i] = Math.max(nextDoctrineMonths[i], month + 1));
+            if (stealDelays[i] > 0) schedule(i, STEAL, nextStealMonths[i] = Math.max(nextStealMonths[i], month + 1));
+        }
+    }
+
+    private static byte toDelay(int delay) {
+        return (byte) Math.max(0, Math.min(delay, Byte.MAX_VALUE));
+    }
+
+    // Counts how often stolen blueprints appear in the stealing factions' spawned fleets
+    protected static class UsageListener extends BaseCampaignEventListener {
+        private final AdversaryFactionEngine engine;
+
+        public UsageListener(AdversaryFactionEngine engine) {
+            super(false);
+            this.engine = engine;
+        }
+
+        @Override
+        public void reportFleetSpawned(CampaignFleetAPI fleet) {
+            AdversaryStolenKnowledge knowledge = engine.stolenKnowledge.get(fleet.getFaction().getId());
+            if (knowledge != null && knowledge.getNumStolen() > 0) knowledge.recordFleet(fleet);
+        }
+    }
+
+    private static class Schedule {
+        final String factionId;
+        final int doctrineDelay, stealDelay, stolenCap;
+        final String[] targetIds;
+
+        Schedule(String factionId, int doctrineDelay, int stealDelay, String[] targetIds, int stolenCap) {
+            this.factionId = factionId;
+            this.doctrineDelay = doctrineDelay;
+            this.stealDelay = stealDelay;
+            this.stolenCap = stolenCap;
+            this.targetIds = targetIds;
+        }
+    }
+}
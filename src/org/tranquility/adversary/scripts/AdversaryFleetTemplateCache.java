@@ -0,0 +1,190 @@
+package org.tranquility.adversary.scripts;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.campaign.FleetDataAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.characters.MutableCharacterStatsAPI.SkillLevelAPI;
+import com.fs.starfarer.api.characters.PersonAPI;
+import com.fs.starfarer.api.combat.ShipVariantAPI;
+import com.fs.starfarer.api.fleet.FleetMemberAPI;
+import com.fs.starfarer.api.fleet.FleetMemberType;
+
+import java.util.*;
+
+/**
+ * Remembers the ships and officers of generated fleets, keyed by faction, difficulty, the caller's style, and the
+ * faction's currently-applied doctrine. Later spawns with the same inputs build a small shell fleet (so every trigger
+ * still applies) and swap in copies of the template's ships, with freshly-generated officers using the template's skills.
+ * Doctrine rotations keep a faction's templates, so returning to a doctrine reuses the fleets generated under it;
+ * templates of a faction are only dropped when its known ships/weapons/fighters change.
+ */
+public final class AdversaryFleetTemplateCache {
+    public static int MAX_TEMPLATES = 48; // Enough for a few styles and difficulties across several doctrines
+    // Chance to generate a fleet from scratch anyway on a hit (replacing the template), so spawns keep some variety
+    public static float REGENERATE_CHANCE = 0.2f;
+
+    private static final LinkedHashMap<String, FleetTemplate> templates = new LinkedHashMap<String, FleetTemplate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FleetTemplate> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+    private static SectorAPI sector;
+    private static int hits, misses;
+    // Separate from the fleets' own randoms, so a cache hit or miss never shifts what a seeded fleet rolls
+    private static final Random regenerateRandom = new Random();
+
+    private AdversaryFleetTemplateCache() {
+    }
+
+    public static String getKey(String factionId, int difficulty, String style) {
+        FactionAPI faction = Global.getSector().getFaction(factionId);
+        return factionId + '|' + difficulty + '|' + style + '|' + Long.toHexString(AdversaryDynamicDoctrine.getFingerprint(faction));
+    }
+
+    /**
+     * @return The template for the key, or null on a miss; the caller then generates the fleet normally and calls store()
+     */
+    public static FleetTemplate get(String key) {
+        if (sector != Global.getSector()) {
+            templates.clear();
+            sector = Global.getSector();
+        }
+
+        FleetTemplate template = templates.get(key);
+        if (template == null || regenerateRandom.nextFloat() < REGENERATE_CHANCE) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return template;
+    }
+
+    // Remembers a freshly-generated fleet; fleets with AI core captains are not cached
+    public static void store(String key, CampaignFleetAPI fleet) {
+        FleetTemplate template = FleetTemplate.capture(fleet);
+        if (template != null) templates.put(key, template);
+    }
+
+    public static void invalidate(String factionId) {
+        String prefix = factionId + '|';
+        for (Iterator<String> iter = templates.keySet().iterator(); iter.hasNext(); )
+            if (iter.next().startsWith(prefix)) iter.remove();
+    }
+
+    public static int getHits() {
+        return hits;
+    }
+
+    public static int getMisses() {
+        return misses;
+    }
+
+    public static class FleetTemplate {
+        private final String factionId;
+        private final ShipVariantAPI[] variants;
+        private final OfficerTemplate[] officers; // null where the ship has no officer
+        private final float[] combatReadiness;
+        private final int flagship;
+
+        private FleetTemplate(String factionId, ShipVariantAPI[] variants, OfficerTemplate[] officers, float[] combatReadiness, int flagship) {
+            this.factionId = factionId;
+            this.variants = variants;
+            this.officers = officers;
+            this.combatReadiness = combatReadiness;
+            this.flagship = flagship;
+        }
+
+        private static FleetTemplate capture(CampaignFleetAPI fleet) {
+            fleet.inflateIfNeeded(); // Templates hold fitted variants, so copies never need inflating
+            List<FleetMemberAPI> members = fleet.getFleetData().getMembersListCopy();
+            ShipVariantAPI[] variants = new ShipVariantAPI[members.size()];
+            OfficerTemplate[] officers = new OfficerTemplate[members.size()];
+            float[] combatReadiness = new float[members.size()];
+            int flagship = 0;
+            for (int i = 0; i < variants.length; i++) {
+                FleetMemberAPI member = members.get(i);
+                PersonAPI captain = member.getCaptain();
+                if (captain != null && captain.isAICore()) return null;
+                variants[i] = member.getVariant().clone();
+                if (captain != null && !captain.isDefault()) officers[i] = new OfficerTemplate(captain);
+                combatReadiness[i] = member.getRepairTracker().getCR();
+                if (member.isFlagship()) flagship = i;
+            }
+            return new FleetTemplate(fleet.getFaction().getId(), variants, officers, combatReadiness, flagship);
+        }
+
+        /**
+         * Replaces the members of a freshly-created shell fleet with copies of this template
+         *
+         * @param commander Person to put on the flagship instead of the template's officer, or null to keep the template's
+         * @param random    The fleet's random; officers are rolled from it rather than taken from the persona pool
+         */
+        public void apply(CampaignFleetAPI shell, PersonAPI commander, Random random) {
+            FactionAPI faction = Global.getSector().getFaction(factionId);
+            FleetDataAPI data = shell.getFleetData();
+            for (FleetMemberAPI member : data.getMembersListCopy()) data.removeFleetMember(member);
+
+            PersonAPI fleetCommander = commander;
+            FleetMemberAPI[] members = new FleetMemberAPI[variants.length];
+            for (int i = 0; i < variants.length; i++) {
+                FleetMemberAPI member = members[i] = Global.getFactory().createFleetMember(FleetMemberType.SHIP, variants[i].clone());
+                member.setShipName(faction.pickRandomShipName());
+
+                PersonAPI captain = i == flagship && commander != null ? commander : officers[i] != null ? officers[i].create(faction, random) : null;
+                if (captain != null) member.setCaptain(captain);
+                data.addFleetMember(member);
+
+                if (i == flagship) {
+                    member.setFlagship(true);
+                    if (fleetCommander == null) fleetCommander = captain;
+                }
+            }
+            if (fleetCommander != null) shell.setCommander(fleetCommander);
+
+            shell.setInflater(null);
+            data.sort();
+            data.setSyncNeeded();
+            data.syncIfNeeded();
+            // The CR the template's ships were generated with, after syncing so it isn't recomputed
+            for (int i = 0; i < members.length; i++) members[i].getRepairTracker().setCR(combatReadiness[i]);
+        }
+    }
+
+    private static class OfficerTemplate {
+        private final String personality, rankId, postId;
+        private final int level;
+        private final String[] skillIds;
+        private final int[] skillLevels;
+
+        OfficerTemplate(PersonAPI officer) {
+            personality = officer.getPersonalityAPI().getId();
+            rankId = officer.getRankId();
+            postId = officer.getPostId();
+            level = officer.getStats().getLevel();
+
+            ArrayList<SkillLevelAPI> skills = new ArrayList<>();
+            for (SkillLevelAPI skill : officer.getStats().getSkillsCopy())
+                if (skill.getLevel() > 0) skills.add(skill);
+            skillIds = new String[skills.size()];
+            skillLevels = new int[skills.size()];
+            for (int i = 0; i < skillIds.length; i++) {
+                skillIds[i] = skills.get(i).getSkill().getId();
+                skillLevels[i] = (int) skills.get(i).getLevel();
+            }
+        }
+
+        // Same role and skills as the template's officer, but a new name and portrait
+        PersonAPI create(FactionAPI faction, Random random) {
+            PersonAPI officer = faction.createRandomPerson(random);
+            officer.setPersonality(personality);
+            officer.setRankId(rankId);
+            officer.setPostId(postId);
+            officer.getStats().setLevel(level);
+            for (int i = 0; i < skillIds.length; i++) officer.getStats().setSkillLevel(skillIds[i], skillLevels[i]);
+            return officer;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.tranquility.adversary.scripts;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.combat.ShipHullSpecAPI;
+import com.fs.starfarer.api.loading.FighterWingSpecAPI;
+import com.fs.starfarer.api.loading.WeaponSpecAPI;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Maps every hull, weapon, and wing spec ID to a dense index, so faction knowledge can be handled as long[] bitsets.
+ * Set operations on knowledge (what a faction knows that another doesn't, which priority IDs are known) then become
+ * word-wise ORs/ANDs, and bitsets take far less heap than copies of the faction's String sets.
+ * The index is built once from the loaded specs; IDs without a spec are never part of a bitset.
+ */
+public final class AdversaryKnowledgeIndex {
+    public static final int SHIPS = 0, WEAPONS = 1, FIGHTERS = 2;
+    private static final int NUM_CATEGORIES = 3;
+
+    private static String[][] ids;
+    private static HashMap<String, Integer>[] indices;
+
+    private AdversaryKnowledgeIndex() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void build() {
+        String[][] newIds = new String[NUM_CATEGORIES][];
+        HashMap<String, Integer>[] newIndices = new HashMap[NUM_CATEGORIES];
+
+        int i = 0;
+        newIds[SHIPS] = new String[Global.getSettings().getAllShipHullSpecs().size()];
+        for (ShipHullSpecAPI spec : Global.getSettings().getAllShipHullSpecs()) newIds[SHIPS][i++] = spec.getHullId();
+        i = 0;
+        newIds[WEAPONS] = new String[Global.getSettings().getAllWeaponSpecs().size()];
+        for (WeaponSpecAPI spec : Global.getSettings().getAllWeaponSpecs()) newIds[WEAPONS][i++] = spec.getWeaponId();
+        i = 0;
+        newIds[FIGHTERS] = new String[Global.getSettings().getAllFighterWingSpecs().size()];
+        for (FighterWingSpecAPI spec : Global.getSettings().getAllFighterWingSpecs()) newIds[FIGHTERS][i++] = spec.getId();
+
+        for (int category = 0; category < NUM_CATEGORIES; category++) {
+            newIndices[category] = new HashMap<>(newIds[category].length * 2);
+            for (int index = 0; index < newIds[category].length; index++)
+                newIndices[category].put(newIds[category][index], index);
+        }
+
+        ids = newIds;
+        indices = newIndices;
+    }
+
+    // Dense index of a spec ID, or -1 if no such spec exists
+    public static int indexOf(int category, String id) {
+        if (indices == null) build();
+        Integer index = indices[category].get(id);
+        return index == null ? -1 : index;
+    }
+
+    // The spec's own ID string for a dense index
+    public static String getId(int category, int index) {
+        if (ids == null) build();
+        return ids[category][index];
+    }
+
+    // Canonical (spec-owned) ID string, or null if no such spec exists
+    public static String resolve(int category, String id) {
+        int index = indexOf(category, id);
+        return index == -1 ? null : ids[category][index];
+    }
+
+    public static long[] newBits(int category) {
+        if (ids == null) build();
+        return new long[(ids[category].length + 63) >>> 6];
+    }
+
+    public static long[] toBits(int category, Iterable<String> idList) {
+        long[] bits = newBits(category);
+        if (idList != null) for (String id : idList) {
+            int index = indexOf(category, id);
+            if (index != -1) bits[index >>> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    public static long[] toBits(int category, String[] idArray) {
+        long[] bits = newBits(category);
+        if (idArray != null) for (String id : idArray) {
+            int index = indexOf(category, id);
+            if (index != -1) bits[index >>> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    // Snapshot of what a faction currently knows in a category
+    public static long[] getKnownBits(FactionAPI faction, int category) {
+        return toBits(category, getKnown(faction, category));
+    }
+
+    public static Set<String> getKnown(FactionAPI faction, int category) {
+        switch (category) {
+            case SHIPS:
+                return faction.getKnownShips();
+            case WEAPONS:
+                return faction.getKnownWeapons();
+            default:
+                return faction.getKnownFighters();
+        }
+    }
+
+    // IDs that one faction knows and the other doesn't
+    public static long[] getKnownOnlyBy(FactionAPI knower, FactionAPI other, int category) {
+        long[] bits = getKnownBits(knower, category);
+        andNot(bits, getKnownBits(other, category));
+        return bits;
+    }
+
+    // In-place operations; all bitsets of a category have the same length
+    public static void or(long[] target, long[] bits) {
+        for (int i = 0; i < target.length; i++) target[i] |= bits[i];
+    }
+
+    public static void and(long[] target, long[] bits) {
+        for (int i = 0; i < target.length; i++) target[i] &= bits[i];
+    }
+
+    public static void andNot(long[] target, long[] bits) {
+        for (int i = 0; i < target.length; i++) target[i] &= ~bits[i];
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) if (word != 0) return false;
+        return true;
+    }
+
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        return count;
+    }
+
+    // Adds the spec ID of every set bit to the collection, visiting only the set bits
+    public static void decode(int category, long[] bits, Collection<String> out) {
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                out.add(getId(category, (word << 6) + Long.numberOfTrailingZeros(remaining)));
+                remaining &= remaining - 1;
+            }
+        }
+    }
+}
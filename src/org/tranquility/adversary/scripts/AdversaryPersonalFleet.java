@@ -3,23 +3,40 @@ package org.tranquility.adversary.scripts;
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.CampaignFleetAPI;
 import com.fs.starfarer.api.campaign.PersonImportance;
+import com.fs.starfarer.api.campaign.econ.Industry;
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
 import com.fs.starfarer.api.characters.PersonAPI;
 import com.fs.starfarer.api.impl.campaign.fleets.PersonalFleetScript;
 import com.fs.starfarer.api.impl.campaign.ids.*;
 import com.fs.starfarer.api.impl.campaign.missions.FleetCreatorMission;
 import com.fs.starfarer.api.impl.campaign.missions.hub.MissionFleetAutoDespawn;
+import org.tranquility.adversary.AdversaryMarketRegistry;
+import org.tranquility.adversary.AdversaryRandom;
+
+import java.util.List;
 
 import static org.tranquility.adversary.AdversaryStrings.*;
 
 public class AdversaryPersonalFleet extends PersonalFleetScript {
     protected final String marketId; // TODO: change access modifier to private if doing save-breaking update
+    // AdversaryRandom state of the commander/fleet stream (default gamma); null in saves from before it existed
+    protected Long randomState;
+    // Home market: the original one while the Adversary holds it, otherwise the best High Command/Military Base market
+    // Only re-resolved when the market registry's version changes (ownership changes, decivilization, raids, bombardments)
+    protected transient MarketAPI market;
+    protected transient boolean resolved;
+    protected transient int registryVersion;
+    // The fleet waits out a disrupted High Command/Military Base at its home instead of moving elsewhere
+    protected transient long disruptedSince;
+    protected transient float disruptedDays;
 
     public AdversaryPersonalFleet(String marketId) {
         super(PERSON_ID_ADVERSARY_PERSONAL_COMMANDER);
         this.marketId = marketId;
 
-        PersonAPI commander = Global.getSector().getFaction(FACTION_ADVERSARY).createRandomPerson();
+        AdversaryRandom commanderRandom = new AdversaryRandom(AdversaryRandom.seedFor("personalFleet", FACTION_ADVERSARY));
+        PersonAPI commander = Global.getSector().getFaction(FACTION_ADVERSARY).createRandomPerson(commanderRandom);
+        randomState = commanderRandom.getState();
         commander.setId(PERSON_ID_ADVERSARY_PERSONAL_COMMANDER);
         commander.setRankId(Ranks.SPACE_ADMIRAL);
         commander.setPostId(Ranks.POST_FLEET_COMMANDER);
@@ -50,11 +67,19 @@ public class AdversaryPersonalFleet extends PersonalFleetScript {
 
     @Override
     public CampaignFleetAPI spawnFleet() {
-        FleetCreatorMission m = new FleetCreatorMission(random);
+        if (randomState == null) randomState = AdversaryRandom.seedFor("personalFleet", FACTION_ADVERSARY);
+        AdversaryRandom stream = new AdversaryRandom(randomState);
+        AdversaryRandom fleetRandom = stream.split();
+        randomState = stream.getState();
+
+        String templateKey = AdversaryFleetTemplateCache.getKey(FACTION_ADVERSARY, 10, "personal");
+        AdversaryFleetTemplateCache.FleetTemplate template = AdversaryFleetTemplateCache.get(templateKey);
+
+        FleetCreatorMission m = new FleetCreatorMission(fleetRandom);
         m.beginFleet();
 
-        MarketAPI market = Global.getSector().getEconomy().getMarket(marketId);
-        m.createQualityFleet(10, FACTION_ADVERSARY, market.getLocationInHyperspace());
+        MarketAPI market = getMarket();
+        m.createQualityFleet(template == null ? 10 : 1, FACTION_ADVERSARY, market.getLocationInHyperspace());
         m.triggerSetFleetCompositionNoSupportShips();
         m.triggerSetFleetCommander(getPerson());
         m.triggerSetFleetFaction(FACTION_ADVERSARY);
@@ -66,21 +91,63 @@ public class AdversaryPersonalFleet extends PersonalFleetScript {
         m.triggerAddCommodityDrop(Commodities.ALPHA_CORE, 1, false);
 
         CampaignFleetAPI fleet = m.createFleet();
+        if (template == null) AdversaryFleetTemplateCache.store(templateKey, fleet);
+        else template.apply(fleet, getPerson(), fleetRandom);
         fleet.removeScriptsOfClass(MissionFleetAutoDespawn.class);
         market.getContainingLocation().addEntity(fleet);
-        fleet.setLocation(market.getPlanetEntity().getLocation().x, market.getPlanetEntity().getLocation().y);
-        fleet.setFacing(random.nextFloat() * 360f);
+        fleet.setLocation(market.getPrimaryEntity().getLocation().x, market.getPrimaryEntity().getLocation().y);
+        fleet.setFacing(fleetRandom.nextFloat() * 360f);
 
         return fleet;
     }
 
+    // Cheap to poll: a registry version check and, only while the home is disrupted, a clock check
     @Override
     public boolean canSpawnFleetNow() {
-        MarketAPI market = Global.getSector().getEconomy().getMarket(marketId);
+        if (getMarket() == null) return false;
+        return disruptedDays <= 0f || Global.getSector().getClock().getElapsedDaysSince(disruptedSince) >= disruptedDays;
+    }
+
+    // The home market, or null if the Adversary has no market that can host the fleet right now
+    protected MarketAPI getMarket() {
+        AdversaryMarketRegistry registry = AdversaryMarketRegistry.get();
+        if (resolved && registryVersion == registry.getVersion()) return market;
+        resolved = true;
+        registryVersion = registry.getVersion();
+
+        MarketAPI home = Global.getSector().getEconomy().getMarket(marketId);
+        if (!isValidHome(home)) {
+            // Operate from the best High Command/Military Base market while the original home is lost, so losing it doesn't end the fleet
+            home = null;
+            List<MarketAPI> markets = registry.getMarkets();
+            for (int i = markets.size() - 1; i >= 0 && registry.getScore(i) > 0; i--) {
+                if (!isValidHome(markets.get(i))) continue;
+                home = markets.get(i);
+                break;
+            }
+            if (home != null && home != market)
+                Global.getLogger(AdversaryPersonalFleet.class).info("Adversary personal fleet operating from " + home.getId() + " while " + marketId + " is lost");
+        }
+        market = home;
+
+        disruptedSince = Global.getSector().getClock().getTimestamp();
+        disruptedDays = market == null ? 0f : getDisruptedDays(market);
+        return market;
+    }
+
+    // Same requirements as before rehoming existed: an Adversary market that isn't decivilized
+    protected static boolean isValidHome(MarketAPI market) {
         if (market == null || market.hasCondition(Conditions.DECIVILIZED)) return false;
         return market.getFactionId().equals(FACTION_ADVERSARY);
     }
 
+    // Days left on the disruption of the market's High Command/Military Base, or 0 if it isn't disrupted or has neither
+    protected static float getDisruptedDays(MarketAPI market) {
+        Industry military = market.getIndustry(Industries.HIGHCOMMAND);
+        if (military == null) military = market.getIndustry(Industries.MILITARYBASE);
+        return military != null && military.isDisrupted() ? military.getDisruptedDays() : 0f;
+    }
+
     @Override
     public boolean shouldScriptBeRemoved() {
         return false;
@@ -0,0 +1,121 @@
+package org.tranquility.adversary.scripts;
+
+import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.combat.ShipVariantAPI;
+import com.fs.starfarer.api.fleet.FleetMemberAPI;
+
+import java.util.*;
+
+/**
+ * Blueprints a faction got through blueprint stealing, and how often each one appeared in the faction's spawned fleets.
+ * With a cap set, the least-used stolen blueprints are forgotten again whenever there are more than the cap.
+ * Only blueprints the faction did not know when they were stolen are recorded, so its own blueprints are never evicted.
+ */
+public class AdversaryStolenKnowledge {
+    private static final char[] PREFIXES = {'s', 'w', 'f'}; // Indexed by AdversaryKnowledgeIndex category
+
+    protected int cap; // 0 or less means no cap
+    // Usage counts keyed by category prefix + ID; insertion order breaks ties, so older blueprints are evicted first
+    protected final LinkedHashMap<String, Integer> usage = new LinkedHashMap<>();
+    // Evicted blueprints are never stolen again, so the same blueprints aren't stolen and evicted over and over
+    protected final HashSet<String> evicted = new HashSet<>();
+
+    public int getCap() {
+        return cap;
+    }
+
+    public void setCap(int cap) {
+        this.cap = cap;
+    }
+
+    public int getNumStolen() {
+        return usage.size();
+    }
+
+    // Clears the bits of every previously-evicted blueprint from a stealing batch
+    void excludeEvicted(long[][] batch) {
+        for (String key : evicted) {
+            int category = getCategory(key.charAt(0));
+            int index = AdversaryKnowledgeIndex.indexOf(category, key.substring(1));
+            if (index != -1) batch[category][index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    // Records the blueprints that were just added to the faction
+    void recordStolen(long[][] added) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (int category = 0; category < added.length; category++) {
+            ids.clear();
+            AdversaryKnowledgeIndex.decode(category, added[category], ids);
+            for (String id : ids) {
+                String key = PREFIXES[category] + id;
+                if (!usage.containsKey(key)) usage.put(key, 0);
+            }
+        }
+    }
+
+    void recordFleet(CampaignFleetAPI fleet) {
+        for (FleetMemberAPI member : fleet.getFleetData().getMembersListCopy()) {
+            if (!increment(PREFIXES[AdversaryKnowledgeIndex.SHIPS] + member.getHullId()) && member.getHullSpec() != null)
+                increment(PREFIXES[AdversaryKnowledgeIndex.SHIPS] + member.getHullSpec().getBaseHullId());
+
+            ShipVariantAPI variant = member.getVariant();
+            if (variant == null) continue;
+            for (String slotId : variant.getFittedWeaponSlots())
+                increment(PREFIXES[AdversaryKnowledgeIndex.WEAPONS] + variant.getWeaponId(slotId));
+            for (String wingId : variant.getFittedWings())
+                increment(PREFIXES[AdversaryKnowledgeIndex.FIGHTERS] + wingId);
+        }
+    }
+
+    /**
+     * Forgets the least-used stolen blueprints until no more than the cap remain
+     *
+     * @return True if anything was forgotten, in which case the faction's derived caches need clearing
+     */
+    boolean enforceCap(FactionAPI faction) {
+        if (cap <= 0 || usage.size() <= cap) return false;
+
+        ArrayList<String> keys = new ArrayList<>(usage.keySet());
+        Collections.sort(keys, new Comparator<String>() { // Stable, so ties keep insertion order
+            @Override
+            public int compare(String k1, String k2) {
+                return Integer.compare(usage.get(k1), usage.get(k2));
+            }
+        });
+
+        int toEvict = usage.size() - cap;
+        for (int i = 0; i < toEvict; i++) {
+            String key = keys.get(i);
+            String id = key.substring(1);
+            switch (getCategory(key.charAt(0))) {
+                case AdversaryKnowledgeIndex.SHIPS:
+                    faction.removeKnownShip(id);
+                    faction.removeUseWhenImportingShip(id);
+                    break;
+                case AdversaryKnowledgeIndex.WEAPONS:
+                    faction.removeKnownWeapon(id);
+                    break;
+                default:
+                    faction.removeKnownFighter(id);
+            }
+            usage.remove(key);
+            evicted.add(key);
+        }
+        return true;
+    }
+
+    private boolean increment(String key) {
+        Integer count = usage.get(key);
+        if (count == null) return false;
+        usage.put(key, count + 1); // Doesn't change the insertion order
+        return true;
+    }
+
+    private static int getCategory(char prefix) {
+        for (int category = 0; category < PREFIXES.length; category++)
+            if (PREFIXES[category] == prefix) return category;
+        return -1;
+    }
+}
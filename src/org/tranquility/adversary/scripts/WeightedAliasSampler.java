@@ -0,0 +1,158 @@
+package org.tranquility.adversary.scripts;
+
+import java.util.Random;
+
+/**
+ * Samples item indices in proportion to their integer weights in expected O(1) time, with O(1) weight updates.
+ * <p>
+ * Items are grouped into buckets by weight class (bucket k holds weights in [2^k, 2^(k+1))), and an alias table
+ * picks a bucket in proportion to its total weight. Within the bucket, an item is proposed uniformly and accepted
+ * with probability weight / 2^(k+1), which is always at least 1/2. Changing a weight only moves one item between
+ * buckets; the alias table covers at most 31 buckets and is rebuilt lazily on the next sample.
+ */
+public class WeightedAliasSampler {
+    private static final int NUM_BUCKETS = 31;
+
+    private final int[] weights;
+    private final int[] bucketOf, posInBucket; // Bucket index and position within that bucket, per item; -1 if weightless
+    private final int[][] buckets = new int[NUM_BUCKETS][];
+    private final int[] bucketSizes = new int[NUM_BUCKETS];
+    private final long[] bucketTotals = new long[NUM_BUCKETS];
+    private long total;
+
+    // Alias table over non-empty buckets
+    private final int[] tableBuckets = new int[NUM_BUCKETS];
+    private final double[] tableProb = new double[NUM_BUCKETS];
+    private final int[] tableAlias = new int[NUM_BUCKETS];
+    private int tableSize;
+    private boolean tableDirty = true;
+
+    public WeightedAliasSampler(int[] initialWeights) {
+        int n = initialWeights.length;
+        weights = new int[n];
+        bucketOf = new int[n];
+        posInBucket = new int[n];
+        for (int i = 0; i < n; i++) {
+            bucketOf[i] = -1;
+            setWeight(i, initialWeights[i]);
+        }
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    public int getWeight(int index) {
+        return weights[index];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // Weights of 0 or less remove the item from sampling
+    public void setWeight(int index, int weight) {
+        if (weight < 0) weight = 0;
+        if (weights[index] == weight && (weight == 0) == (bucketOf[index] == -1)) return;
+
+        removeFromBucket(index);
+        weights[index] = weight;
+        if (weight > 0) addToBucket(index);
+        tableDirty = true;
+    }
+
+    /**
+     * Picks an index in proportion to its weight, never returning the excluded index unless it is the only weighted item.
+     * Every other index is picked with probability weight / (total - excluded weight).
+     *
+     * @param random   Source of randomness
+     * @param excluded Index to exclude, or -1 to allow every index
+     * @return The picked index, or -1 if no item has any weight
+     */
+    public int sample(Random random, int excluded) {
+        if (total <= 0) return -1;
+        if (excluded < 0 || bucketOf[excluded] == -1) {
+            if (tableDirty) buildTable();
+            return sampleOnce(random);
+        }
+        if (total - weights[excluded] <= 0) return excluded;
+
+        // Take the excluded item out for this draw only; the table over at most 31 buckets is rebuilt around it
+        removeFromBucket(excluded);
+        buildTable();
+        int picked = sampleOnce(random);
+        addToBucket(excluded);
+        tableDirty = true;
+        return picked;
+    }
+
+    private int sampleOnce(Random random) {
+        int column = random.nextInt(tableSize);
+        int bucket = tableBuckets[random.nextDouble() < tableProb[column] ? column : tableAlias[column]];
+
+        int[] members = buckets[bucket];
+        int size = bucketSizes[bucket];
+        long ceiling = 1L << (bucket + 1);
+        while (true) {
+            int candidate = members[random.nextInt(size)];
+            if (random.nextDouble() * ceiling < weights[candidate]) return candidate;
+        }
+    }
+
+    // Standard Vose alias construction over the bucket totals
+    private void buildTable() {
+        tableDirty = false;
+        tableSize = 0;
+        for (int b = 0; b < NUM_BUCKETS; b++)
+            if (bucketSizes[b] > 0) tableBuckets[tableSize++] = b;
+
+        int[] small = new int[tableSize], large = new int[tableSize];
+        int numSmall = 0, numLarge = 0;
+        double[] scaled = new double[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            scaled[i] = (double) bucketTotals[tableBuckets[i]] * tableSize / total;
+            if (scaled[i] < 1.0) small[numSmall++] = i;
+            else large[numLarge++] = i;
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int s = small[--numSmall], l = large[--numLarge];
+            tableProb[s] = scaled[s];
+            tableAlias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1.0;
+            if (scaled[l] < 1.0) small[numSmall++] = l;
+            else large[numLarge++] = l;
+        }
+        while (numLarge > 0) tableProb[large[--numLarge]] = 1.0;
+        while (numSmall > 0) tableProb[small[--numSmall]] = 1.0; // Only reachable through rounding errors
+    }
+
+    private void addToBucket(int index) {
+        int bucket = 31 - Integer.numberOfLeadingZeros(weights[index]);
+        if (buckets[bucket] == null) buckets[bucket] = new int[4];
+        else if (bucketSizes[bucket] == buckets[bucket].length) {
+            int[] grown = new int[buckets[bucket].length * 2];
+            System.arraycopy(buckets[bucket], 0, grown, 0, bucketSizes[bucket]);
+            buckets[bucket] = grown;
+        }
+        buckets[bucket][bucketSizes[bucket]] = index;
+        posInBucket[index] = bucketSizes[bucket]++;
+        bucketOf[index] = bucket;
+        bucketTotals[bucket] += weights[index];
+        total += weights[index];
+    }
+
+    private void removeFromBucket(int index) {
+        int bucket = bucketOf[index];
+        if (bucket == -1) return;
+
+        // Swap-remove: move the bucket's last member into the freed slot
+        int last = buckets[bucket][--bucketSizes[bucket]];
+        buckets[bucket][posInBucket[index]] = last;
+        posInBucket[last] = posInBucket[index];
+
+        bucketOf[index] = -1;
+        bucketTotals[bucket] -= weights[index];
+        total -= weights[index];
+    }
+}
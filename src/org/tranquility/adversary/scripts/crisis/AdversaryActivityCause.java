@@ -3,7 +3,6 @@ package org.tranquility.adversary.scripts.crisis;
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.RepLevel;
 import com.fs.starfarer.api.campaign.StarSystemAPI;
-import com.fs.starfarer.api.campaign.econ.MarketAPI;
 import com.fs.starfarer.api.impl.campaign.intel.events.BaseEventIntel;
 import com.fs.starfarer.api.impl.campaign.intel.events.BaseFactorTooltip;
 import com.fs.starfarer.api.impl.campaign.intel.events.BaseHostileActivityCause2;
@@ -13,6 +12,7 @@ import com.fs.starfarer.api.ui.TooltipMakerAPI.TooltipCreator;
 import com.fs.starfarer.api.util.Misc;
 
 import java.awt.*;
+import java.util.HashMap;
 
 import static org.tranquility.adversary.AdversaryStrings.*;
 
@@ -23,6 +23,12 @@ public class AdversaryActivityCause extends BaseHostileActivityCause2 {
 
     public static float MAX_MAG = 0.5f;
 
+    // Per-system magnitude contributions, computed for all player systems at once and refreshed daily
+    protected transient HashMap<StarSystemAPI, Float> magnitudes;
+    protected transient long magnitudesTimestamp;
+    protected transient int magnitudesVersion;
+    protected transient boolean magnitudesActive;
+
     public AdversaryActivityCause(HostileActivityEventIntel intel) {
         super(intel);
     }
@@ -57,33 +63,13 @@ public class AdversaryActivityCause extends BaseHostileActivityCause2 {
 
     @Override
     public int getProgress() {
-        if (AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer())
-            return AdversaryHostileActivityFactor.isPlayerDefeatedAdversaryAttack() ? 0 : HostileActivityEventIntel.MAX_PROGRESS;
+        AdversaryState state = AdversaryState.get();
+        if (state.satBombardedByPlayer)
+            return state.playerDefeatedAdversaryAttack ? 0 : HostileActivityEventIntel.MAX_PROGRESS;
 
         if (!isThreateningToAdversary()) return 0;
 
-        int score = 0;
-        for (MarketAPI market : Misc.getPlayerMarkets(false)) {
-            int size = market.getSize();
-            switch (size) {
-                case 1:
-                case 2:
-                case 3:
-                case 4:
-                    score += 1;
-                    break;
-                case 5:
-                    score += 2;
-                    break;
-                case 6:
-                    score += 5;
-                    break;
-                default:
-                    score += 10;
-                    break;
-            }
-        }
-        return score;
+        return PlayerColonySnapshot.get().getScore();
     }
 
     @Override
@@ -93,25 +79,46 @@ public class AdversaryActivityCause extends BaseHostileActivityCause2 {
 
     @Override
     public float getMagnitudeContribution(StarSystemAPI system) {
-        if (getProgress() <= 0) return 0f;
+        PlayerColonySnapshot colonies = PlayerColonySnapshot.get();
+        if (magnitudes == null || magnitudesVersion != colonies.getVersion() || Global.getSector().getClock().getElapsedDaysSince(magnitudesTimestamp) >= 1f)
+            computeMagnitudes(colonies);
+
+        if (!magnitudesActive) return 0f;
 
-        return (0.2f + 0.8f * intel.getMarketPresenceFactor(system)) * (AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer() ? MAX_MAG * 2f : MAX_MAG);
+        Float magnitude = magnitudes.get(system);
+        if (magnitude == null) { // Not a player system as of the last batch; compute and remember it
+            magnitude = computeMagnitude(system, AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer());
+            magnitudes.put(system, magnitude);
+        }
+        return magnitude;
+    }
+
+    // Computes the contribution of every player system in a single pass, sharing the progress and sat-bomb checks
+    protected void computeMagnitudes(PlayerColonySnapshot colonies) {
+        if (magnitudes == null) magnitudes = new HashMap<>();
+        else magnitudes.clear();
+        magnitudesTimestamp = Global.getSector().getClock().getTimestamp();
+        magnitudesVersion = colonies.getVersion();
+
+        magnitudesActive = getProgress() > 0;
+        if (!magnitudesActive) return;
+
+        boolean wasSatBombed = AdversaryHostileActivityFactor.wasAdversaryEverSatBombardedByPlayer();
+        for (StarSystemAPI system : colonies.getSystems())
+            magnitudes.put(system, computeMagnitude(system, wasSatBombed));
+    }
+
+    protected float computeMagnitude(StarSystemAPI system, boolean wasSatBombed) {
+        return (0.2f + 0.8f * intel.getMarketPresenceFactor(system)) * (wasSatBombed ? MAX_MAG * 2f : MAX_MAG);
     }
 
     public static boolean isThreateningToAdversary() {
-        if (AdversaryHostileActivityFactor.isPlayerDefeatedAdversaryAttack()) return false;
-
-        if (Global.getSector().getFaction(FACTION_ADVERSARY).getRelToPlayer().isAtBest(RepLevel.HOSTILE)) {
-            int large = 0;
-            int count = 0;
-            int medium = 0;
-            for (MarketAPI market : Misc.getPlayerMarkets(false)) {
-                int size = market.getSize();
-                if (size >= LARGE_COLONY) large++;
-                if (size >= MEDIUM_COLONY) medium++;
-                count++;
-            }
-            return large > 0 || (medium > 0 && count >= COUNT_IF_MEDIUM);
+        AdversaryState state = AdversaryState.get();
+        if (state.playerDefeatedAdversaryAttack) return false;
+
+        if (state.adversaryFaction.getRelToPlayer().isAtBest(RepLevel.HOSTILE)) {
+            PlayerColonySnapshot colonies = PlayerColonySnapshot.get();
+            return colonies.getLargeCount() > 0 || (colonies.getMediumCount() > 0 && colonies.getColonyCount() >= COUNT_IF_MEDIUM);
         } else return false;
     }
 }
\ No newline at end of file
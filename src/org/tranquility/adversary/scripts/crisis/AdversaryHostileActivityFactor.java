@@ -2,10 +2,8 @@ package org.tranquility.adversary.scripts.crisis;
 
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.CampaignFleetAPI;
-import com.fs.starfarer.api.campaign.FactionAPI;
 import com.fs.starfarer.api.campaign.StarSystemAPI;
 import com.fs.starfarer.api.campaign.comm.IntelInfoPlugin.ListInfoMode;
-import com.fs.starfarer.api.campaign.econ.Industry;
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
 import com.fs.starfarer.api.impl.campaign.ids.*;
 import com.fs.starfarer.api.impl.campaign.intel.events.*;
@@ -23,9 +21,15 @@ import com.fs.starfarer.api.ui.TooltipMakerAPI;
 import com.fs.starfarer.api.ui.TooltipMakerAPI.TooltipCreator;
 import com.fs.starfarer.api.util.Misc;
 import org.lwjgl.util.vector.Vector2f;
-import org.tranquility.adversary.AdversaryUtil;
+import org.tranquility.adversary.AdversaryConfig;
+import org.tranquility.adversary.AdversaryCopyableRandom;
+import org.tranquility.adversary.AdversaryMarketRegistry;
+import org.tranquility.adversary.AdversaryRandom;
+import org.tranquility.adversary.scripts.AdversaryFleetTemplateCache;
+import org.tranquility.adversary.scripts.AdversaryFleetTemplateCache.FleetTemplate;
 
 import java.awt.*;
+import java.util.List;
 import java.util.Random;
 
 import static org.tranquility.adversary.AdversaryStrings.*;
@@ -33,6 +37,10 @@ import static org.tranquility.adversary.AdversaryStrings.*;
 public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor implements FGIEventListener {
     public static String DEFEATED_ADVERSARY_ATTACK = "$defeatedAdversaryAttack";
 
+    protected transient CrisisSelectionCache selectionCache;
+    // AdversaryRandom state of the expedition sizing stream (default gamma); null until first used, then derived from the sector seed
+    protected Long attackRandomState;
+
     public AdversaryHostileActivityFactor(HostileActivityEventIntel intel) {
         super(intel);
 
@@ -91,7 +99,7 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
 
     @Override
     public int getMaxNumFleets(StarSystemAPI system) {
-        return Global.getSettings().getInt("adversaryMaxFleets");
+        return AdversaryConfig.get().maxFleets;
     }
 
     @Override
@@ -107,12 +115,16 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
         int difficulty = (int) Math.max(1f, Math.round(f * 4f));
         difficulty += random.nextInt(6);
 
+        // On a hit, only a minimal shell fleet is generated to carry the triggers, and its ships are swapped for the template's
+        String templateKey = AdversaryFleetTemplateCache.getKey(FACTION_ADVERSARY, difficulty, "scout");
+        FleetTemplate template = AdversaryFleetTemplateCache.get(templateKey);
+
         FleetCreatorMission m = new FleetCreatorMission(random);
         m.beginFleet();
 
         Vector2f loc = system.getLocation();
 
-        m.createQualityFleet(difficulty, FACTION_ADVERSARY, loc);
+        m.createQualityFleet(template == null ? difficulty : 1, FACTION_ADVERSARY, loc);
         m.triggerSetFleetDoctrineComp(0, 0, 5);
         m.triggerFleetSetAvoidPlayerSlowly();
         m.triggerSetFleetType(FleetTypes.MERC_SCOUT);
@@ -123,6 +135,8 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
         m.triggerMakeLowRepImpact();
 
         CampaignFleetAPI fleet = m.createFleet();
+        if (template == null) AdversaryFleetTemplateCache.store(templateKey, fleet);
+        else template.apply(fleet, null, random);
         fleet.removeAbility(Abilities.TRANSPONDER);
 
         return fleet;
@@ -173,12 +187,13 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
     @Override
     public float getEventFrequency(HostileActivityEventIntel intel, EventStageData stage) {
         if (stage.id == Stage.HA_EVENT) {
-            if (isPlayerDefeatedAdversaryAttack()) return 0f;
+            AdversaryState state = AdversaryState.get();
+            if (state.playerDefeatedAdversaryAttack) return 0f;
 
-            if (AdversaryPunitiveExpedition.get() != null) return 0f;
+            if (state.punitiveExpedition != null) return 0f;
 
             if (pickTargetSystem(intel, stage) != null && pickSourceMarket() != null) {
-                if (wasAdversaryEverSatBombardedByPlayer())
+                if (state.satBombardedByPlayer)
                     return 666f; // Maybe you shouldn't have proven their point by blowing up one of their planets
                 else
                     return 1f; // Should make this crisis very rare to experience before dealing with most of the other crises
@@ -201,7 +216,7 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
         if (source == null || target == null) return false;
 
         stage.rollData = null;
-        return startAttack(source, target, getRandomizedStageRandom(3));
+        return startAttack(source, target, nextAttackRandom());
     }
 
     @Override
@@ -223,6 +238,7 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
     @Override
     public void notifyFactorRemoved() {
         Global.getSector().getListenerManager().removeListener(this);
+        if (selectionCache != null) selectionCache.remove();
     }
 
     @Override
@@ -241,36 +257,58 @@ public class AdversaryHostileActivityFactor extends BaseHostileActivityFactor im
     }
 
     public static boolean isPlayerDefeatedAdversaryAttack() {
-        return Global.getSector().getPlayerMemoryWithoutUpdate().getBoolean(DEFEATED_ADVERSARY_ATTACK);
+        return AdversaryState.get().playerDefeatedAdversaryAttack;
     }
 
     public static void setPlayerDefeatedAdversaryAttack() {
         Global.getSector().getPlayerMemoryWithoutUpdate().set(DEFEATED_ADVERSARY_ATTACK, true);
+        AdversaryState.get().refresh();
     }
 
     public static boolean wasAdversaryEverSatBombardedByPlayer() {
-        FactionAPI faction = Global.getSector().getFaction(FACTION_ADVERSARY);
-        if (faction != null)
-            return faction.getMemoryWithoutUpdate().getInt(MemFlags.FACTION_SATURATION_BOMBARED_BY_PLAYER) > 0;
-
-        return false;
+        return AdversaryState.get().satBombardedByPlayer;
     }
 
     public StarSystemAPI pickTargetSystem(HostileActivityEventIntel intel, EventStageData stage) {
-        return PerseanLeagueHostileActivityFactor.findBlockadeTarget(intel, stage);
+        return getSelectionCache().getTarget(intel, stage);
     }
 
     public MarketAPI pickSourceMarket() {
-        for (MarketAPI market : AdversaryUtil.getAdversaryMarkets().descendingSet()) {
-            Industry b = market.getIndustry(Industries.HIGHCOMMAND);
-            if (b == null) b = market.getIndustry(Industries.MILITARYBASE);
-            if (b != null && !b.isDisrupted() && b.isFunctional()) return market;
+        return getSelectionCache().getSource();
+    }
+
+    // Uncached target search; use pickTargetSystem() instead
+    public StarSystemAPI findTargetSystem(HostileActivityEventIntel intel, EventStageData stage) {
+        return PerseanLeagueHostileActivityFactor.findBlockadeTarget(intel, stage);
+    }
+
+    // Uncached source search; use pickSourceMarket() instead
+    public MarketAPI findSourceMarket() {
+        List<MarketAPI> markets = AdversaryMarketRegistry.get().getMarkets();
+        for (int i = markets.size() - 1; i >= 0; i--) {
+            MarketAPI market = markets.get(i);
+            if (CrisisSelectionCache.isValidSource(market)) return market;
         }
         return null;
     }
 
+    // Each attack gets its own split of the sector's attack stream, so expedition sizing is reproducible per sector
+    protected AdversaryRandom nextAttackRandom() {
+        if (attackRandomState == null) attackRandomState = AdversaryRandom.seedFor("attack", FACTION_ADVERSARY);
+        AdversaryRandom stream = new AdversaryRandom(attackRandomState);
+        AdversaryRandom attackRandom = stream.split();
+        attackRandomState = stream.getState();
+        return attackRandom;
+    }
+
+    protected CrisisSelectionCache getSelectionCache() {
+        if (selectionCache == null) selectionCache = new CrisisSelectionCache(this);
+        return selectionCache;
+    }
+
     public boolean startAttack(MarketAPI source, StarSystemAPI system, Random random) {
-        GenericRaidParams params = new GenericRaidParams(new Random(random.nextLong()), true);
+        // Same numbers as a plain Random, but the expedition can prebuild its fleets on a copy
+        GenericRaidParams params = new GenericRaidParams(new AdversaryCopyableRandom(random.nextLong()), true);
 
         params.makeFleetsHostile = true;
 
@@ -2,12 +2,16 @@ package org.tranquility.adversary.scripts.crisis;
 
 import com.fs.starfarer.api.Global;
 import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.impl.campaign.fleets.FleetFactoryV3;
 import com.fs.starfarer.api.impl.campaign.ids.FleetTypes;
 import com.fs.starfarer.api.impl.campaign.ids.MemFlags;
 import com.fs.starfarer.api.impl.campaign.intel.group.GenericRaidFGI;
 import com.fs.starfarer.api.impl.campaign.missions.FleetCreatorMission;
 import com.fs.starfarer.api.util.IntervalUtil;
 import com.fs.starfarer.api.util.Misc;
+import org.tranquility.adversary.AdversaryCopyableRandom;
+
+import java.util.*;
 
 import static org.tranquility.adversary.AdversaryStrings.HA_PUNITIVE_EXPEDITION_BASE_NAME;
 import static org.tranquility.adversary.AdversaryStrings.HA_PUNITIVE_EXPEDITION_NOUN;
@@ -15,19 +19,39 @@ import static org.tranquility.adversary.AdversaryStrings.HA_PUNITIVE_EXPEDITION_
 public class AdversaryPunitiveExpedition extends GenericRaidFGI {
     public static final String ADVERSARY_FLEET = "$AdversaryPE_fleet";
     public static String KEY = "$AdversaryPE_ref";
+    // If true, fleets are generated one at a time during the prep phase instead of all at once when the expedition launches
+    public static boolean STAGGERED_SPAWNING = true;
+    // Fleet generation stops for the current frame once this many milliseconds have been spent
+    public static float SPAWN_BUDGET_MS = 4f;
+    protected static final String HOSTILE_REASON = "AdversaryPunEx";
     protected IntervalUtil interval = new IntervalUtil(0.1f, 0.3f);
 
+    // Hostility is applied once when the payload action starts and cleared when it ends, instead of being refreshed constantly
+    protected boolean payloadHostile;
+    protected transient Set<CampaignFleetAPI> hostileFleets;
+
+    // Fleets are prebuilt in order with a copy of the expedition's random, which makes them exactly the fleets burst
+    // generation would produce as long as nothing else draws from the random before launch; if something does,
+    // prebuilding starts over. Not saved; after a load, prebuilding starts over from the saved random
+    protected transient AdversaryCopyableRandom prebuildFrom, prebuildRandom;
+    protected transient List<CampaignFleetAPI> prebuiltFleets;
+    protected transient int nextFleet;
+
     public AdversaryPunitiveExpedition(GenericRaidParams params) {
         super(params);
 
         Global.getSector().getMemoryWithoutUpdate().set(KEY, this);
+        AdversaryState.get().refresh();
     }
 
     @Override
     protected void notifyEnding() {
         super.notifyEnding();
 
+        clearHostility();
+
         Global.getSector().getMemoryWithoutUpdate().unset(KEY);
+        AdversaryState.get().refresh();
     }
 
     @Override
@@ -61,10 +85,59 @@ public class AdversaryPunitiveExpedition extends GenericRaidFGI {
         if (size >= 8) m.triggerSetFleetDoctrineOther(5, 0); // more capitals in large fleets
     }
 
+    @Override
+    protected CampaignFleetAPI createFleet(int size, float damage) {
+        if (nextFleet == 0) takeOverPrebuiltFleets();
+        int index = nextFleet++;
+        if (prebuiltFleets == null || index >= prebuiltFleets.size()) return super.createFleet(size, damage);
+
+        CampaignFleetAPI fleet = prebuiltFleets.get(index);
+        prebuiltFleets.set(index, null);
+        // Rolled after all prebuilt fleets instead of right after this one, so only the damage differs from burst generation
+        if (fleet != null && damage > 0f) FleetFactoryV3.applyDamageToFleet(fleet, damage, false, random);
+        return fleet;
+    }
+
+    // On launch, the expedition's random continues from where the prebuilt fleets left off, as if they had just been generated
+    protected void takeOverPrebuiltFleets() {
+        if (prebuiltFleets != null && isPrebuildCurrent()) ((AdversaryCopyableRandom) random).setState(prebuildRandom);
+        else prebuiltFleets = null;
+        prebuildFrom = prebuildRandom = null;
+    }
+
+    // Generates fleets in order during the prep phase, stopping once this frame's budget has been used up
+    protected void prebuildFleets() {
+        if (nextFleet > 0 || !(random instanceof AdversaryCopyableRandom)) return; // Expeditions from older versions are generated on launch
+        if (prebuiltFleets == null || !isPrebuildCurrent()) {
+            prebuiltFleets = new ArrayList<>(params.fleetSizes.size());
+            prebuildFrom = ((AdversaryCopyableRandom) random).copy();
+            prebuildRandom = prebuildFrom.copy();
+        }
+        if (prebuiltFleets.size() >= params.fleetSizes.size()) return;
+
+        long deadline = System.nanoTime() + (long) (SPAWN_BUDGET_MS * 1000000f);
+        Random prevRandom = random;
+        random = prebuildRandom;
+        try {
+            while (prebuiltFleets.size() < params.fleetSizes.size() && System.nanoTime() < deadline)
+                prebuiltFleets.add(super.createFleet(params.fleetSizes.get(prebuiltFleets.size()), 0f));
+        } finally {
+            random = prevRandom;
+        }
+    }
+
+    // False if something drew from the expedition's random since prebuilding started
+    protected boolean isPrebuildCurrent() {
+        return random instanceof AdversaryCopyableRandom && ((AdversaryCopyableRandom) random).hasSameState(prebuildFrom);
+    }
+
     @Override
     public void abort() {
-        if (!isAborted()) for (CampaignFleetAPI curr : getFleets())
-            curr.getMemoryWithoutUpdate().unset(ADVERSARY_FLEET);
+        if (!isAborted()) {
+            clearHostility();
+            for (CampaignFleetAPI curr : getFleets())
+                curr.getMemoryWithoutUpdate().unset(ADVERSARY_FLEET);
+        }
         super.abort();
     }
 
@@ -72,16 +145,45 @@ public class AdversaryPunitiveExpedition extends GenericRaidFGI {
     public void advance(float amount) {
         super.advance(amount);
 
-        interval.advance(Misc.getDays(amount));
+        if (STAGGERED_SPAWNING && isCurrent(PREPARE_ACTION)) prebuildFleets();
 
-        if (interval.intervalElapsed() && isCurrent(PAYLOAD_ACTION)) {
-            String reason = "AdversaryPunEx";
-            for (CampaignFleetAPI curr : getFleets())
-                Misc.setFlagWithReason(curr.getMemoryWithoutUpdate(), MemFlags.MEMORY_KEY_MAKE_HOSTILE, reason, true, 1f);
+        boolean inPayload = isCurrent(PAYLOAD_ACTION);
+        if (inPayload != payloadHostile) {
+            if (inPayload) {
+                payloadHostile = true;
+                for (CampaignFleetAPI curr : getFleets()) makeHostile(curr);
+            } else clearHostility();
+            return;
         }
+
+        if (!inPayload) return;
+
+        // Only fleets that joined later, or whose flag was removed by something else, need the flag (re)applied
+        interval.advance(Misc.getDays(amount));
+        if (interval.intervalElapsed()) for (CampaignFleetAPI curr : getFleets())
+            if (!getHostileFleets().contains(curr) || !curr.getMemoryWithoutUpdate().getBoolean(MemFlags.MEMORY_KEY_MAKE_HOSTILE))
+                makeHostile(curr);
+    }
+
+    protected void makeHostile(CampaignFleetAPI fleet) {
+        Misc.setFlagWithReason(fleet.getMemoryWithoutUpdate(), MemFlags.MEMORY_KEY_MAKE_HOSTILE, HOSTILE_REASON, true, -1f);
+        getHostileFleets().add(fleet);
+    }
+
+    protected void clearHostility() {
+        payloadHostile = false;
+        for (CampaignFleetAPI curr : getFleets()) getHostileFleets().add(curr);
+        for (CampaignFleetAPI curr : getHostileFleets())
+            Misc.setFlagWithReason(curr.getMemoryWithoutUpdate(), MemFlags.MEMORY_KEY_MAKE_HOSTILE, HOSTILE_REASON, false, 0f);
+        hostileFleets.clear();
+    }
+
+    protected Set<CampaignFleetAPI> getHostileFleets() {
+        if (hostileFleets == null) hostileFleets = new LinkedHashSet<>();
+        return hostileFleets;
     }
 
     public static AdversaryPunitiveExpedition get() {
-        return (AdversaryPunitiveExpedition) Global.getSector().getMemoryWithoutUpdate().get(KEY);
+        return AdversaryState.get().punitiveExpedition;
     }
 }
\ No newline at end of file
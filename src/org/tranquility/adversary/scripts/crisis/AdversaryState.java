@@ -0,0 +1,91 @@
+package org.tranquility.adversary.scripts.crisis;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CargoAPI;
+import com.fs.starfarer.api.campaign.FactionAPI;
+import com.fs.starfarer.api.campaign.InteractionDialogAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.econ.Industry;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.listeners.ColonyPlayerHostileActListener;
+import com.fs.starfarer.api.campaign.listeners.EconomyTickListener;
+import com.fs.starfarer.api.impl.campaign.ids.MemFlags;
+import com.fs.starfarer.api.impl.campaign.rulecmd.salvage.MarketCMD.TempData;
+
+import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
+
+/**
+ * Cached view of the Adversary crisis flags and references kept in sector, player, and faction memory.
+ * The fields are read-only for callers; they are updated by refresh(), which is called by every setter that
+ * changes the underlying memory, after saturation bombardments, and on each economy tick as a safety net.
+ */
+public final class AdversaryState implements EconomyTickListener, ColonyPlayerHostileActListener {
+    private static AdversaryState instance;
+
+    private final SectorAPI sector;
+
+    public FactionAPI adversaryFaction;
+    public boolean playerDefeatedAdversaryAttack;
+    public boolean satBombardedByPlayer;
+    public AdversaryPunitiveExpedition punitiveExpedition;
+    public MutualTenacityScript mutualTenacityScript;
+    // Incremented whenever any of the above changes
+    public int version;
+
+    private AdversaryState(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    public static AdversaryState get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) {
+            instance = new AdversaryState(sector);
+            sector.getListenerManager().addListener(instance, true);
+            instance.refresh();
+        }
+        return instance;
+    }
+
+    public void refresh() {
+        FactionAPI faction = sector.getFaction(FACTION_ADVERSARY);
+        boolean defeated = sector.getPlayerMemoryWithoutUpdate().getBoolean(AdversaryHostileActivityFactor.DEFEATED_ADVERSARY_ATTACK);
+        boolean satBombed = faction != null && faction.getMemoryWithoutUpdate().getInt(MemFlags.FACTION_SATURATION_BOMBARED_BY_PLAYER) > 0;
+        AdversaryPunitiveExpedition punEx = (AdversaryPunitiveExpedition) sector.getMemoryWithoutUpdate().get(AdversaryPunitiveExpedition.KEY);
+        MutualTenacityScript mtScript = (MutualTenacityScript) sector.getMemoryWithoutUpdate().get(MutualTenacityScript.KEY);
+
+        if (faction != adversaryFaction || defeated != playerDefeatedAdversaryAttack || satBombed != satBombardedByPlayer || punEx != punitiveExpedition || mtScript != mutualTenacityScript)
+            version++;
+
+        adversaryFaction = faction;
+        playerDefeatedAdversaryAttack = defeated;
+        satBombardedByPlayer = satBombed;
+        punitiveExpedition = punEx;
+        mutualTenacityScript = mtScript;
+    }
+
+    @Override
+    public void reportEconomyTick(int iterIndex) {
+        refresh();
+    }
+
+    @Override
+    public void reportEconomyMonthEnd() {
+    }
+
+    @Override
+    public void reportRaidForValuablesFinishedBeforeCargoShown(InteractionDialogAPI dialog, MarketAPI market, TempData actionData, CargoAPI cargo) {
+    }
+
+    @Override
+    public void reportRaidToDisruptFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData, Industry industry) {
+    }
+
+    @Override
+    public void reportTacticalBombardmentFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData) {
+    }
+
+    @Override
+    public void reportSaturationBombardmentFinished(InteractionDialogAPI dialog, MarketAPI market, TempData actionData) {
+        refresh();
+    }
+}
@@ -0,0 +1,89 @@
+package org.tranquility.adversary.scripts.crisis;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.BaseCampaignEventListener;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.Industry;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.impl.campaign.ids.Industries;
+import com.fs.starfarer.api.impl.campaign.intel.events.BaseEventIntel.EventStageData;
+import com.fs.starfarer.api.impl.campaign.intel.events.HostileActivityEventIntel;
+import org.tranquility.adversary.AdversaryMarketRegistry;
+
+import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
+
+/**
+ * Remembers the crisis target system and source market picked by an AdversaryHostileActivityFactor.
+ * Selections are redone when the player's colonies, the Adversary's markets/industries, or the Adversary's
+ * reputation with the player change, and otherwise expire after EXPIRE_DAYS.
+ */
+public class CrisisSelectionCache extends BaseCampaignEventListener {
+    public static float EXPIRE_DAYS = 1f;
+
+    protected final AdversaryHostileActivityFactor factor;
+
+    protected StarSystemAPI target;
+    protected boolean hasTarget;
+    protected long targetTimestamp;
+    protected int targetColonyVersion;
+
+    protected MarketAPI source;
+    protected boolean hasSource;
+    protected long sourceTimestamp;
+    protected int sourceMarketVersion;
+
+    public CrisisSelectionCache(AdversaryHostileActivityFactor factor) {
+        super(false);
+        this.factor = factor;
+        Global.getSector().addTransientListener(this);
+    }
+
+    public StarSystemAPI getTarget(HostileActivityEventIntel intel, EventStageData stage) {
+        PlayerColonySnapshot colonies = PlayerColonySnapshot.get();
+        if (colonies.getSystems().isEmpty()) return null; // No candidates, so no need to run the full search
+
+        if (!hasTarget || targetColonyVersion != colonies.getVersion() || isExpired(targetTimestamp) || (target != null && !colonies.getSystems().contains(target))) {
+            target = factor.findTargetSystem(intel, stage);
+            hasTarget = true;
+            targetTimestamp = Global.getSector().getClock().getTimestamp();
+            targetColonyVersion = colonies.getVersion();
+        }
+        return target;
+    }
+
+    public MarketAPI getSource() {
+        int marketVersion = AdversaryMarketRegistry.get().getVersion();
+        if (!hasSource || sourceMarketVersion != marketVersion || isExpired(sourceTimestamp) || (source != null && !isValidSource(source))) {
+            source = factor.findSourceMarket();
+            hasSource = true;
+            sourceTimestamp = Global.getSector().getClock().getTimestamp();
+            sourceMarketVersion = marketVersion;
+        }
+        return source;
+    }
+
+    public void invalidate() {
+        hasTarget = false;
+        hasSource = false;
+    }
+
+    public void remove() {
+        Global.getSector().removeListener(this);
+    }
+
+    @Override
+    public void reportPlayerReputationChange(String faction, float delta) {
+        if (FACTION_ADVERSARY.equals(faction)) invalidate();
+    }
+
+    public static boolean isValidSource(MarketAPI market) {
+        if (!market.getFactionId().equals(FACTION_ADVERSARY)) return false;
+        Industry b = market.getIndustry(Industries.HIGHCOMMAND);
+        if (b == null) b = market.getIndustry(Industries.MILITARYBASE);
+        return b != null && !b.isDisrupted() && b.isFunctional();
+    }
+
+    protected static boolean isExpired(long timestamp) {
+        return Global.getSector().getClock().getElapsedDaysSince(timestamp) >= EXPIRE_DAYS;
+    }
+}
@@ -29,7 +29,7 @@ public class MutualTenacity extends BaseMarketConditionPlugin {
         float opad = 10f;
         tooltip.addPara("%s stability", opad, Misc.getHighlightColor(), "+" + (int) getBonus());
 
-        if (AdversaryHostileActivityFactor.isPlayerDefeatedAdversaryAttack())
+        if (AdversaryState.get().playerDefeatedAdversaryAttack)
             tooltip.addPara("The bonus is doubled due to the inhabitants " + market.getOnOrAt() + " " + market.getName() + " feeling empowered by the outcome of the Adversary conflict.", opad, Misc.getPositiveHighlightColor(), "doubled");
     }
 
@@ -40,7 +40,7 @@ public class MutualTenacity extends BaseMarketConditionPlugin {
 
     public static float getBonus() {
         float bonus = STABILITY_BONUS;
-        if (AdversaryHostileActivityFactor.isPlayerDefeatedAdversaryAttack())
+        if (AdversaryState.get().playerDefeatedAdversaryAttack)
             bonus += STABILITY_BONUS_DEFEATED_ADVERSARY_ATTACK;
 
         return bonus;
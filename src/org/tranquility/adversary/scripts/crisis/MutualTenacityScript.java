@@ -1,19 +1,33 @@
 package org.tranquility.adversary.scripts.crisis;
 
 import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.BaseCampaignEventListener;
+import com.fs.starfarer.api.campaign.PlanetAPI;
 import com.fs.starfarer.api.campaign.RepLevel;
 import com.fs.starfarer.api.campaign.comm.CommMessageAPI.MessageClickAction;
 import com.fs.starfarer.api.campaign.econ.EconomyAPI.EconomyUpdateListener;
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.listeners.ListenerManagerAPI;
+import com.fs.starfarer.api.campaign.listeners.PlayerColonizationListener;
 import com.fs.starfarer.api.impl.campaign.ids.Sounds;
 import com.fs.starfarer.api.impl.campaign.intel.BaseIntelPlugin;
 import com.fs.starfarer.api.impl.campaign.intel.MessageIntel;
 import com.fs.starfarer.api.util.Misc;
 
+import java.util.Objects;
+
 import static org.tranquility.adversary.AdversaryStrings.FACTION_ADVERSARY;
 
-public class MutualTenacityScript implements EconomyUpdateListener {
+public class MutualTenacityScript implements EconomyUpdateListener, PlayerColonizationListener {
     public static String KEY = "$adversary_mt_ref";
+    public static String CONDITION_ID = "adversary_mutual_tenacity";
+
+    // Colony snapshot version the condition was last applied for; colonies are only revisited when it changes
+    protected transient int colonyVersion;
+    // Expiry is only re-evaluated after the player's standing with the Adversary (or their commission) changes
+    protected transient RelationsListener relationsListener;
+    protected transient boolean relationsChanged;
+    protected transient String lastCommissionId;
 
     public MutualTenacityScript() {
         sendGainedMessage();
@@ -26,6 +40,8 @@ public class MutualTenacityScript implements EconomyUpdateListener {
 
         Global.getSector().getEconomy().addUpdateListener(this);
         Global.getSector().getMemoryWithoutUpdate().set(KEY, this);
+        AdversaryState.get().refresh();
+        ensureListeners();
 
         economyUpdated();
     }
@@ -36,16 +52,22 @@ public class MutualTenacityScript implements EconomyUpdateListener {
 
     @Override
     public void economyUpdated() {
-        for (MarketAPI curr : Misc.getPlayerMarkets(false)) {
-            if (!curr.hasCondition("adversary_mutual_tenacity")) {
-                curr.addCondition("adversary_mutual_tenacity");
-            }
-        }
+        PlayerColonySnapshot colonies = PlayerColonySnapshot.get();
+        if (colonies.getVersion() == colonyVersion) return;
+        colonyVersion = colonies.getVersion();
+
+        for (MarketAPI curr : colonies.getMarkets()) addCondition(curr);
     }
 
     @Override
     public boolean isEconomyListenerExpired() {
-        if (AdversaryHostileActivityFactor.isPlayerDefeatedAdversaryAttack()) return false;
+        if (AdversaryState.get().playerDefeatedAdversaryAttack) return false;
+
+        ensureListeners();
+        String commissionId = Misc.getCommissionFactionId();
+        if (!relationsChanged && Objects.equals(commissionId, lastCommissionId)) return false;
+        relationsChanged = false;
+        lastCommissionId = commissionId;
 
         if (!isTrustworthyToAdversary()) {
             cleanup();
@@ -54,12 +76,37 @@ public class MutualTenacityScript implements EconomyUpdateListener {
         return false;
     }
 
+    // Newly-founded colonies get the condition immediately; acquired or lost colonies are picked up through the colony snapshot
+    @Override
+    public void reportPlayerColonizedPlanet(PlanetAPI planet) {
+        if (planet.getMarket() != null) addCondition(planet.getMarket());
+    }
+
+    @Override
+    public void reportPlayerAbandonedColony(MarketAPI colony) {
+    }
+
     public static boolean isTrustworthyToAdversary() {
-        return (Misc.getCommissionFactionId() != null && Misc.getCommissionFactionId().equals(FACTION_ADVERSARY)) || Global.getSector().getFaction(FACTION_ADVERSARY).getRelToPlayer().isAtWorst(RepLevel.COOPERATIVE);
+        return (Misc.getCommissionFactionId() != null && Misc.getCommissionFactionId().equals(FACTION_ADVERSARY)) || AdversaryState.get().adversaryFaction.getRelToPlayer().isAtWorst(RepLevel.COOPERATIVE);
     }
 
     public static MutualTenacityScript get() {
-        return (MutualTenacityScript) Global.getSector().getMemoryWithoutUpdate().get(KEY);
+        return AdversaryState.get().mutualTenacityScript;
+    }
+
+    private static void addCondition(MarketAPI market) {
+        if (!market.hasCondition(CONDITION_ID)) market.addCondition(CONDITION_ID);
+    }
+
+    // Transient listeners need to be re-added after loading a save, and older saves lack the colonization listener
+    private void ensureListeners() {
+        if (relationsListener != null) return;
+        relationsListener = new RelationsListener(this);
+        Global.getSector().addTransientListener(relationsListener);
+        relationsChanged = true;
+
+        ListenerManagerAPI listMan = Global.getSector().getListenerManager();
+        if (!listMan.hasListener(this)) listMan.addListener(this);
     }
 
     private void sendGainedMessage() {
@@ -86,10 +133,27 @@ public class MutualTenacityScript implements EconomyUpdateListener {
             sendExpiredMessage();
         }
         Global.getSector().getMemoryWithoutUpdate().unset(KEY);
+        AdversaryState.get().refresh();
+        Global.getSector().getListenerManager().removeListener(this);
+        if (relationsListener != null) Global.getSector().removeListener(relationsListener);
         for (MarketAPI curr : Misc.getPlayerMarkets(false)) {
-            if (curr.hasCondition("adversary_mutual_tenacity")) {
-                curr.removeCondition("adversary_mutual_tenacity");
+            if (curr.hasCondition(CONDITION_ID)) {
+                curr.removeCondition(CONDITION_ID);
             }
         }
     }
-}
\ No newline at end of file
+
+    protected static class RelationsListener extends BaseCampaignEventListener {
+        private final MutualTenacityScript script;
+
+        public RelationsListener(MutualTenacityScript script) {
+            super(false);
+            this.script = script;
+        }
+
+        @Override
+        public void reportPlayerReputationChange(String faction, float delta) {
+            if (FACTION_ADVERSARY.equals(faction)) script.relationsChanged = true;
+        }
+    }
+}
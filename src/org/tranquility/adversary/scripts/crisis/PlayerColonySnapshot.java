@@ -0,0 +1,218 @@
+package org.tranquility.adversary.scripts.crisis;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.listeners.ColonyDecivListener;
+import com.fs.starfarer.api.campaign.listeners.ColonySizeChangeListener;
+import com.fs.starfarer.api.campaign.listeners.EconomyTickListener;
+import com.fs.starfarer.api.campaign.listeners.PlayerColonizationListener;
+import com.fs.starfarer.api.util.Misc;
+
+import java.util.*;
+
+/**
+ * Statistics on the player's colonies, recomputed at most once per economy tick or colony gain/loss/resize,
+ * so the crisis cause and rule checks can read them in constant time.
+ */
+public final class PlayerColonySnapshot implements EconomyTickListener, PlayerColonizationListener, ColonyDecivListener, ColonySizeChangeListener {
+    public static final int MAX_SIZE = 10;
+
+    private static PlayerColonySnapshot instance;
+
+    private final SectorAPI sector;
+    private final int[] sizeHistogram = new int[MAX_SIZE + 1]; // Index is colony size, sizes above MAX_SIZE are clamped
+    private final ArrayList<MarketAPI> markets = new ArrayList<>();
+    private final List<MarketAPI> marketsView = Collections.unmodifiableList(markets);
+    private HashMap<MarketAPI, Integer> marketSizes = new HashMap<>(); // As of the last recompute
+    // Ranked by total colony size in descending order; only systems whose colonies changed are moved on a recompute
+    private final ArrayList<StarSystemAPI> systems = new ArrayList<>();
+    private final List<StarSystemAPI> systemsView = Collections.unmodifiableList(systems);
+    private final HashMap<StarSystemAPI, int[]> systemTotals = new HashMap<>(); // Total colony size and colony count
+    private final Comparator<StarSystemAPI> rankOrder = new Comparator<StarSystemAPI>() {
+        @Override
+        public int compare(StarSystemAPI s1, StarSystemAPI s2) {
+            int comp = Integer.compare(systemTotals.get(s2)[0], systemTotals.get(s1)[0]);
+            if (comp != 0) return comp;
+            return s1.getId().compareTo(s2.getId());
+        }
+    };
+    private int count, large, medium, score;
+    private boolean stale = true;
+    private int version;
+
+    private PlayerColonySnapshot(SectorAPI sector) {
+        this.sector = sector;
+    }
+
+    public static PlayerColonySnapshot get() {
+        SectorAPI sector = Global.getSector();
+        if (instance == null || instance.sector != sector) {
+            instance = new PlayerColonySnapshot(sector);
+            sector.getListenerManager().addListener(instance, true);
+        }
+        if (instance.stale) instance.recompute();
+        return instance;
+    }
+
+    public int getColonyCount() {
+        return count;
+    }
+
+    // Number of colonies of at least AdversaryActivityCause.LARGE_COLONY size
+    public int getLargeCount() {
+        return large;
+    }
+
+    // Number of colonies of at least AdversaryActivityCause.MEDIUM_COLONY size
+    public int getMediumCount() {
+        return medium;
+    }
+
+    public int getCountOfSize(int size) {
+        return sizeHistogram[Math.max(0, Math.min(size, MAX_SIZE))];
+    }
+
+    // Colony presence and size score used by AdversaryActivityCause.getProgress()
+    public int getScore() {
+        return score;
+    }
+
+    public List<MarketAPI> getMarkets() {
+        return marketsView;
+    }
+
+    // Star systems containing at least one player colony, ranked by their total colony size in descending order
+    public List<StarSystemAPI> getSystems() {
+        return systemsView;
+    }
+
+    // Incremented whenever the player's colonies actually change; lets dependent caches detect changes cheaply
+    public int getVersion() {
+        return version;
+    }
+
+    // Forces a recompute and a version change, even if the colony list looks the same
+    public void invalidate() {
+        stale = true;
+        version++;
+    }
+
+    private void recompute() {
+        stale = false;
+
+        // Every colony gained, lost, or resized since the last recompute, compared market by market
+        List<MarketAPI> current = Misc.getPlayerMarkets(false);
+        HashMap<MarketAPI, Integer> newSizes = new HashMap<>();
+        LinkedHashSet<StarSystemAPI> moved = new LinkedHashSet<>();
+        boolean changed = !current.equals(markets);
+        for (MarketAPI market : current) {
+            int size = market.getSize();
+            newSizes.put(market, size);
+            Integer oldSize = marketSizes.remove(market);
+            if (oldSize != null && oldSize == size) continue;
+            changed = true;
+            addToSystem(market, size - (oldSize == null ? 0 : oldSize), oldSize == null ? 1 : 0, moved);
+        }
+        for (Map.Entry<MarketAPI, Integer> lost : marketSizes.entrySet()) {
+            changed = true;
+            addToSystem(lost.getKey(), -lost.getValue(), -1, moved);
+        }
+        marketSizes = newSizes;
+        if (!changed) return;
+        version++;
+
+        markets.clear();
+        markets.addAll(current);
+
+        for (int i = 0; i <= MAX_SIZE; i++) sizeHistogram[i] = 0;
+        for (MarketAPI market : markets) sizeHistogram[Math.max(0, Math.min(market.getSize(), MAX_SIZE))]++;
+
+        count = markets.size();
+        large = 0;
+        medium = 0;
+        score = 0;
+        for (int size = 0; size <= MAX_SIZE; size++) {
+            int num = sizeHistogram[size];
+            if (num == 0) continue;
+            if (size >= AdversaryActivityCause.LARGE_COLONY) large += num;
+            if (size >= AdversaryActivityCause.MEDIUM_COLONY) medium += num;
+            score += num * getSizeScore(size);
+        }
+
+        rerankSystems(moved);
+    }
+
+    private void addToSystem(MarketAPI market, int size, int colonies, Set<StarSystemAPI> moved) {
+        StarSystemAPI system = market.getStarSystem();
+        if (system == null) return;
+        int[] totals = systemTotals.get(system);
+        if (totals == null) systemTotals.put(system, totals = new int[2]);
+        totals[0] += size;
+        totals[1] += colonies;
+        moved.add(system);
+    }
+
+    // Takes the systems whose colonies changed out of the ranking and inserts them again at their new place,
+    // leaving out those without colonies; the rest of the ranking stays sorted throughout
+    private void rerankSystems(Set<StarSystemAPI> moved) {
+        if (moved.isEmpty()) return;
+        systems.removeAll(moved);
+        for (StarSystemAPI system : moved) {
+            if (systemTotals.get(system)[1] <= 0) systemTotals.remove(system);
+            else systems.add(-Collections.binarySearch(systems, system, rankOrder) - 1, system);
+        }
+    }
+
+    private static int getSizeScore(int size) {
+        switch (size) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                return 1;
+            case 5:
+                return 2;
+            case 6:
+                return 5;
+            default:
+                return 10;
+        }
+    }
+
+    // Colonies can change hands through invasions and the like, which is only visible once the economy advances
+    @Override
+    public void reportEconomyTick(int iterIndex) {
+        stale = true;
+    }
+
+    @Override
+    public void reportEconomyMonthEnd() {
+    }
+
+    @Override
+    public void reportPlayerColonizedPlanet(PlanetAPI planet) {
+        invalidate();
+    }
+
+    @Override
+    public void reportPlayerAbandonedColony(MarketAPI colony) {
+        invalidate();
+    }
+
+    @Override
+    public void reportColonyAboutToBeDecivilized(MarketAPI market, boolean fullyDestroyed) {
+    }
+
+    @Override
+    public void reportColonyDecivilized(MarketAPI market, boolean fullyDestroyed) {
+        invalidate();
+    }
+
+    @Override
+    public void reportColonySizeChanged(MarketAPI market, int prevSize) {
+        if (market.isPlayerOwned()) invalidate();
+    }
+}
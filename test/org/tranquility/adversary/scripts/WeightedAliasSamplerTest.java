@@ -0,0 +1,192 @@
+package org.tranquility.adversary.scripts;
+
+import java.util.Random;
+
+/**
+ * Frequency tests for WeightedAliasSampler, compared against the linear-scan picker it replaced in
+ * AdversaryDynamicDoctrine. Needs no game classes; run with:
+ * <pre>
+ * javac -d out src/org/tranquility/adversary/scripts/WeightedAliasSampler.java test/org/tranquility/adversary/scripts/WeightedAliasSamplerTest.java
+ * java -cp out org.tranquility.adversary.scripts.WeightedAliasSamplerTest
+ * </pre>
+ * Seeds are fixed, so results are repeatable; each chi-square statistic is checked at p = 0.001.
+ */
+public class WeightedAliasSamplerTest {
+    private static final int SAMPLES = 1000000;
+    private static final int[][] WEIGHTS = {{1, 2, 3, 4}, {5, 1, 1, 1, 1}, {1, 1000, 7, 64, 3, 33}, {1, 1}, {3, 0, 5, 0, 9}};
+
+    public static void main(String[] args) {
+        for (int[] weights : WEIGHTS) {
+            testNoExclusion(weights);
+            for (int excluded = 0; excluded < weights.length; excluded++)
+                if (weights[excluded] > 0) testExclusion(weights, excluded);
+        }
+        testLegacyWeighting();
+        testNeverRepeats();
+        testSetWeight();
+        testEdgeCases();
+        System.out.println("WeightedAliasSamplerTest: all tests passed");
+    }
+
+    private static void testNoExclusion(int[] weights) {
+        WeightedAliasSampler sampler = new WeightedAliasSampler(weights);
+        Random random = new Random(1);
+        long[] counts = new long[weights.length];
+        for (int i = 0; i < SAMPLES; i++) counts[sampler.sample(random, -1)]++;
+        checkChiSquare("no exclusion", counts, expected(weights, -1, -1));
+    }
+
+    // Each other index should be picked with probability weight / (total - excluded weight)
+    private static void testExclusion(int[] weights, int excluded) {
+        WeightedAliasSampler sampler = new WeightedAliasSampler(weights);
+        Random random = new Random(2);
+        long[] counts = new long[weights.length];
+        for (int i = 0; i < SAMPLES; i++) counts[sampler.sample(random, excluded)]++;
+        check(counts[excluded] == 0, "excluded index " + excluded + " was picked");
+        checkChiSquare("excluding " + excluded, counts, expected(weights, excluded, -1));
+    }
+
+    /*
+     * The old picker drew from [0, total] inclusive, so the first item in its list got one extra unit of weight. The
+     * new sampler drops that unit; this pins down that the two differ by exactly that unit and nothing else.
+     */
+    private static void testLegacyWeighting() {
+        int[] weights = {1, 2, 3, 4};
+        for (int excluded = 0; excluded < weights.length; excluded++) {
+            LegacyPicker legacy = new LegacyPicker(weights, excluded);
+            int first = legacy.order[0];
+            Random random = new Random(3);
+            long[] legacyCounts = new long[weights.length];
+            for (int i = 0; i < SAMPLES; i++) legacyCounts[legacy.peek(random)]++;
+            checkChiSquare("legacy excluding " + excluded, legacyCounts, expected(weights, excluded, first));
+
+            WeightedAliasSampler sampler = new WeightedAliasSampler(weights);
+            random = new Random(3);
+            long[] counts = new long[weights.length];
+            for (int i = 0; i < SAMPLES; i++) counts[sampler.sample(random, excluded)]++;
+            checkChiSquare("sampler excluding " + excluded, counts, expected(weights, excluded, -1));
+
+            // Once the extra unit is accounted for, the two are the same distribution
+            double[] adjusted = new double[weights.length];
+            long remaining = total(weights) - weights[excluded];
+            for (int i = 0; i < weights.length; i++)
+                if (i != excluded) adjusted[i] = legacyCounts[i] * (double) (remaining + 1) / remaining - (i == first ? SAMPLES / (double) remaining : 0);
+            checkChiSquare("legacy adjusted excluding " + excluded, round(adjusted), expected(weights, excluded, -1));
+        }
+    }
+
+    // Mirrors how doctrines are picked: the previous pick is excluded from the next one
+    private static void testNeverRepeats() {
+        int[] weights = {4, 1, 2, 8, 1};
+        WeightedAliasSampler sampler = new WeightedAliasSampler(weights);
+        Random random = new Random(4);
+        int current = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int picked = sampler.sample(random, current);
+            check(picked != current, "picked the current index twice in a row");
+            current = picked;
+        }
+    }
+
+    private static void testSetWeight() {
+        WeightedAliasSampler sampler = new WeightedAliasSampler(new int[]{1, 1, 1, 1});
+        sampler.setWeight(0, 40);
+        sampler.setWeight(2, 0);
+        sampler.setWeight(3, 3);
+        check(sampler.getTotal() == 44, "total after setWeight was " + sampler.getTotal());
+
+        int[] weights = {40, 1, 0, 3};
+        Random random = new Random(5);
+        long[] counts = new long[weights.length];
+        for (int i = 0; i < SAMPLES; i++) counts[sampler.sample(random, 1)]++;
+        checkChiSquare("after setWeight", counts, expected(weights, 1, -1));
+        check(sampler.getTotal() == 44, "sampling with an exclusion changed the total");
+    }
+
+    private static void testEdgeCases() {
+        Random random = new Random(6);
+        check(new WeightedAliasSampler(new int[]{0, 0}).sample(random, -1) == -1, "sampled from no weight");
+        check(new WeightedAliasSampler(new int[]{0, 0}).sample(random, 1) == -1, "sampled from no weight with an exclusion");
+        check(new WeightedAliasSampler(new int[]{0, 5}).sample(random, 1) == 1, "only weighted item was not returned");
+        check(new WeightedAliasSampler(new int[]{5}).sample(random, 0) == 0, "single item was not returned");
+    }
+
+    // Expected counts; bonus is the index given one extra unit of weight (the old picker's off-by-one), or -1
+    private static double[] expected(int[] weights, int excluded, int bonus) {
+        long sum = total(weights) - (excluded >= 0 ? weights[excluded] : 0) + (bonus >= 0 ? 1 : 0);
+        double[] expected = new double[weights.length];
+        for (int i = 0; i < weights.length; i++)
+            if (i != excluded) expected[i] = (double) SAMPLES * (weights[i] + (i == bonus ? 1 : 0)) / sum;
+        return expected;
+    }
+
+    private static long total(int[] weights) {
+        long total = 0;
+        for (int weight : weights) total += weight;
+        return total;
+    }
+
+    private static long[] round(double[] values) {
+        long[] rounded = new long[values.length];
+        for (int i = 0; i < values.length; i++) rounded[i] = Math.round(values[i]);
+        return rounded;
+    }
+
+    private static void checkChiSquare(String name, long[] counts, double[] expected) {
+        double chiSquare = 0;
+        int categories = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (expected[i] == 0) {
+                check(counts[i] == 0, name + ": picked index " + i + " with no weight");
+                continue;
+            }
+            double diff = counts[i] - expected[i];
+            chiSquare += diff * diff / expected[i];
+            categories++;
+        }
+        if (categories < 2) return;
+        double critical = criticalValue(categories - 1);
+        check(chiSquare < critical, name + ": chi-square " + chiSquare + " >= " + critical);
+    }
+
+    // Wilson-Hilferty approximation of the chi-square critical value at p = 0.001
+    private static double criticalValue(int degrees) {
+        double z = 3.090232, a = 2.0 / (9.0 * degrees);
+        double cube = 1 - a + z * Math.sqrt(a);
+        return degrees * cube * cube * cube;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    // The linear-scan picker AdversaryDynamicDoctrine used before WeightedAliasSampler, reduced to indices
+    private static class LegacyPicker {
+        private final int[] weights, order; // The last element in order is the current doctrine
+        private final int total;
+
+        LegacyPicker(int[] weights, int current) {
+            this.weights = weights;
+            order = new int[weights.length];
+            int next = 0, sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                if (i == current) continue;
+                order[next++] = i;
+                sum += weights[i];
+            }
+            order[next] = current;
+            total = sum;
+        }
+
+        // The old pick(), without moving the picked doctrine to the end
+        int peek(Random seed) {
+            int random = seed.nextInt(total + 1), weightSoFar = 0, index = 0;
+            while (index < order.length) {
+                weightSoFar += weights[order[index]];
+                if (random <= weightSoFar) break;
+                index++;
+            }
+            return order[index];
+        }
+    }
+}